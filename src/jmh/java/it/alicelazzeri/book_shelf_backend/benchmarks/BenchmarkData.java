@@ -0,0 +1,63 @@
+package it.alicelazzeri.book_shelf_backend.benchmarks;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.CatalogBook;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.entities.enums.Role;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Fixtures shared by the benchmarks, shaped like the seed data
+
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static BookDTO bookDTO(int index) {
+        return new BookDTO(
+                "Harry Potter and the Philosopher's Stone " + index,
+                "J. K. Rowling",
+                9780747532699L,
+                LocalDate.of(2024, 1, 1),
+                null,
+                "Harry Potter's first year at Hogwarts, where he learns he's a famous wizard and faces the Dark Lord.",
+                index % 10,
+                "https://res.cloudinary.com/dopblayrc/image/upload/v1722926794/book%20covers/harry%20potter/psgtrx0kn1zb7e6s3dgo.jpg"
+        );
+    }
+
+    public static User user() {
+        User user = new User("Alice", "Reader", "alice.reader@bookshelf.dev", "password", null);
+        user.setId(1);
+        user.setRole(Role.USER);
+        return user;
+    }
+
+    public static List<Book> books(User user, int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BookDTO bookDTO = bookDTO(i);
+            CatalogBook catalogBook = CatalogBook.builder()
+                    .withIsbnCode(bookDTO.isbnCode())
+                    .withBookTitle(bookDTO.bookTitle())
+                    .withBookAuthor(bookDTO.bookAuthor())
+                    .withBookPlot(bookDTO.bookPlot())
+                    .withBookCoverUrl(bookDTO.bookCoverUrl())
+                    .build();
+            Book book = Book.builder()
+                    .withCatalog(catalogBook)
+                    .withBookTitle(bookDTO.bookTitle())
+                    .withAddingDate(bookDTO.addingDate())
+                    .withCompletedReadings(bookDTO.completedReadings())
+                    .withUser(user)
+                    .build();
+            book.setId(i + 1);
+            books.add(book);
+        }
+        return books;
+    }
+}
@@ -0,0 +1,91 @@
+package it.alicelazzeri.book_shelf_backend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.PageDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Bytes on the wire and serialization time of one page of GET /api/books in each representation:
+// the former Page<Book> JSON, the compact PageDTO of summaries as JSON (plain, gzip, ?fields=) and as
+// Smile and CBOR. The size of every representation is printed once per trial
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookListSerializationBenchmark {
+
+    @Param({"20", "100"})
+    private int books;
+
+    @Param({"page-json", "compact-json", "compact-json-gzip", "compact-fields-json", "compact-smile", "compact-cbor"})
+    private String representation;
+
+    private ObjectWriter writer;
+    private Object payload;
+    private boolean gzip;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Book> bookList = BenchmarkData.books(BenchmarkData.user(), books);
+        PageRequest pageRequest = PageRequest.of(0, books);
+        PageDTO<BookSummaryDTO> summaries = PageDTO.of(new PageImpl<>(bookList.stream()
+                .map(book -> new BookSummaryDTO(book.getId(), book.getUser().getId(), book.getBookTitle(), book.getBookAuthor(),
+                        book.getIsbnCode(), book.getAddingDate(), book.getCompletedReadings(), book.getBookCoverUrl()))
+                .toList(), pageRequest, 10_000));
+
+        SimpleFilterProvider allFields = new SimpleFilterProvider().setFailOnUnknownId(false);
+        ObjectMapper json = mapper(new ObjectMapper(), allFields);
+        payload = summaries;
+        writer = json.writer();
+        switch (representation) {
+            case "page-json" -> payload = new PageImpl<>(bookList, pageRequest, 10_000);
+            case "compact-json" -> {
+            }
+            case "compact-json-gzip" -> gzip = true;
+            case "compact-fields-json" -> writer = json.writer(new SimpleFilterProvider().addFilter(BookSummaryDTO.FIELDS_FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept("id", "bookTitle", "bookAuthor")));
+            case "compact-smile" -> writer = mapper(new ObjectMapper(new SmileFactory()), allFields).writer();
+            case "compact-cbor" -> writer = mapper(new ObjectMapper(new CBORFactory()), allFields).writer();
+            default -> throw new IllegalArgumentException("Unknown representation: " + representation);
+        }
+        System.out.printf("%n%s, %d books: %d bytes per page%n", representation, books, serialize().length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        byte[] bytes = writer.writeValueAsBytes(payload);
+        if (!gzip) {
+            return bytes;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+            gzipOutput.write(bytes);
+        }
+        return output.toByteArray();
+    }
+
+    private static ObjectMapper mapper(ObjectMapper mapper, SimpleFilterProvider filters) {
+        return mapper.registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .setFilterProvider(filters);
+    }
+}
@@ -0,0 +1,53 @@
+package it.alicelazzeri.book_shelf_backend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Jackson serialization of the payloads returned by GET /api/books and GET /api/users/{id}
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"20", "100"})
+    private int books;
+
+    private ObjectMapper objectMapper;
+    private Page<Book> booksPage;
+    private User user;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        user = BenchmarkData.user();
+        List<Book> bookList = BenchmarkData.books(user, books);
+        user.setBooks(bookList);
+        booksPage = new PageImpl<>(bookList, PageRequest.of(0, books), 10_000);
+    }
+
+    @Benchmark
+    public byte[] serializeBooksPage() throws Exception {
+        return objectMapper.writeValueAsBytes(booksPage);
+    }
+
+    @Benchmark
+    public byte[] serializeUserWithBooks() throws Exception {
+        return objectMapper.writeValueAsBytes(user);
+    }
+}
@@ -0,0 +1,68 @@
+package it.alicelazzeri.book_shelf_backend.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import it.alicelazzeri.book_shelf_backend.security.JwtAuthenticationFilter;
+import it.alicelazzeri.book_shelf_backend.security.JwtTools;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-request authentication overhead: signature verification and parsing of a token, the cached
+// path used for repeated tokens, and the whole filter
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+
+    private JwtTools jwtTools;
+    private JwtAuthenticationFilter filter;
+    private String token;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setup() {
+        jwtTools = new JwtTools();
+        ReflectionTestUtils.setField(jwtTools, "secret", "benchmark-secret-benchmark-secret-benchmark-secret");
+        ReflectionTestUtils.setField(jwtTools, "expirationMs", TimeUnit.DAYS.toMillis(1));
+        jwtTools.init();
+
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtTools", jwtTools);
+        ReflectionTestUtils.setField(filter, "cacheTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(filter, "cacheMaxSize", 10_000L);
+        filter.init();
+
+        token = jwtTools.createToken(BenchmarkData.user());
+        request = new MockHttpServletRequest("GET", "/api/books/1");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    @Benchmark
+    public Claims verifyToken() {
+        return jwtTools.verifyToken(token);
+    }
+
+    @Benchmark
+    public UsernamePasswordAuthenticationToken cachedAuthentication() {
+        return filter.authenticate(token);
+    }
+
+    @Benchmark
+    public Object filterRequest() throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+}
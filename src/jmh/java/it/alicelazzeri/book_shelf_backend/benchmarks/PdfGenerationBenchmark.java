@@ -0,0 +1,82 @@
+package it.alicelazzeri.book_shelf_backend.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import it.alicelazzeri.book_shelf_backend.services.BookService;
+import it.alicelazzeri.book_shelf_backend.services.PdfResourceRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// BookService.writeBooksPDF for small and large libraries, without a database: the repository
+// returns in-memory slices
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfGenerationBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int books;
+
+    private BookService bookService;
+    private User user;
+
+    @Setup
+    public void setup() throws Exception {
+        user = BenchmarkData.user();
+        List<Book> bookList = BenchmarkData.books(user, books);
+
+        PdfResourceRegistry pdfResourceRegistry = new PdfResourceRegistry();
+        ReflectionTestUtils.setField(pdfResourceRegistry, "meterRegistry", new SimpleMeterRegistry());
+        pdfResourceRegistry.loadResources();
+
+        bookService = new BookService();
+        ReflectionTestUtils.setField(bookService, "bookRepository", bookRepository(bookList));
+        ReflectionTestUtils.setField(bookService, "pdfResourceRegistry", pdfResourceRegistry);
+        ReflectionTestUtils.setField(bookService, "pdfPageSize", 500);
+    }
+
+    @Benchmark
+    public long writeBooksPDF() throws Exception {
+        CountingOutputStream output = new CountingOutputStream();
+        bookService.writeBooksPDF(user, output);
+        return output.count;
+    }
+
+    private static BookRepository bookRepository(List<Book> bookList) {
+        return (BookRepository) Proxy.newProxyInstance(BookRepository.class.getClassLoader(),
+                new Class<?>[]{BookRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findBooksAfter")) {
+                        // books are sorted by id, seek past the last one
+                        long lastId = args[4] != null ? (Long) args[4] : 0;
+                        return bookList.stream().filter(book -> book.getId() > lastId).limit((Integer) args[5]).toList();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    // Discards the document, only its size is kept
+    private static class CountingOutputStream extends java.io.OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
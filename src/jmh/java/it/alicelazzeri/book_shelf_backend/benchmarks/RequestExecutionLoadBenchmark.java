@@ -0,0 +1,85 @@
+package it.alicelazzeri.book_shelf_backend.benchmarks;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.alicelazzeri.book_shelf_backend.BookShelfBackendApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throughput and latency percentiles (p0.99 in the SampleTime results) of database-bound API calls with
+// requests served by the Tomcat platform pool or by virtual threads behind the database limiter. More
+// client threads than Tomcat's 200 workers keep requests queuing in the platform mode. Unlike the other
+// benchmarks it boots the whole application against the database of env.properties, seeding it again
+// for each mode. Requests rejected by the limiter (429) are counted and printed at the end of each mode.
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Threads(400)
+@Fork(1)
+public class RequestExecutionLoadBenchmark {
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String baseUrl;
+    private long[] userIds;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(BookShelfBackendApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "bookshelf.seed.users=500",
+                        "bookshelf.seed.max-books-per-user=50")
+                .run();
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        userIds = context.getBean(JdbcTemplate.class).queryForList("SELECT id FROM users", Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        FunctionCounter rejected = context.getBean(MeterRegistry.class).find("bookshelf.db.limiter.rejected").functionCounter();
+        System.out.printf("%nvirtualThreads=%s: %.0f requests rejected by the database limiter%n",
+                virtualThreads, rejected != null ? rejected.count() : 0);
+        httpClient.close();
+        context.close();
+    }
+
+    @Benchmark
+    public int userBooks() throws Exception {
+        return get("/api/books/user/" + randomUserId() + "?size=20");
+    }
+
+    @Benchmark
+    public int userStats() throws Exception {
+        return get("/api/users/" + randomUserId() + "/stats");
+    }
+
+    private long randomUserId() {
+        return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+    }
+
+    private int get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,40 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.benchmarks.BenchmarkData;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// BookService.mapToEntity / updateBookFromDTO (same package to reach the package-private mapper)
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookMappingBenchmark {
+
+    private final BookService bookService = new BookService();
+    private BookDTO bookDTO;
+    private Book existingBook;
+
+    @Setup
+    public void setup() {
+        bookDTO = BenchmarkData.bookDTO(1);
+        existingBook = bookService.mapToEntity(BenchmarkData.bookDTO(2));
+    }
+
+    @Benchmark
+    public Book mapToEntity() {
+        return bookService.mapToEntity(bookDTO);
+    }
+
+    @Benchmark
+    public Book updateBookFromDTO() {
+        bookService.updateBookFromDTO(existingBook, bookDTO);
+        return existingBook;
+    }
+}
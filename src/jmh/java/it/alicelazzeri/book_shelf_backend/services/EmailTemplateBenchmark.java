@@ -0,0 +1,35 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Registration email rendering (run with -prof gc to see allocation per render)
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailTemplateBenchmark {
+
+    private EmailTemplateRegistry emailTemplateRegistry;
+    private Map<String, String> variables;
+
+    @Setup
+    public void setup() throws Exception {
+        emailTemplateRegistry = new EmailTemplateRegistry();
+        ReflectionTestUtils.setField(emailTemplateRegistry, "meterRegistry", new SimpleMeterRegistry());
+        emailTemplateRegistry.loadTemplates();
+        variables = Map.of("recipientName", "Alice <Reader>");
+    }
+
+    @Benchmark
+    public String renderRegistration() {
+        return emailTemplateRegistry.render(EmailTemplate.REGISTRATION, variables);
+    }
+}
@@ -0,0 +1,81 @@
+package it.alicelazzeri.book_shelf_backend.config;
+
+import it.alicelazzeri.book_shelf_backend.exceptions.TooManyRequestsException;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// JpaTransactionManager admitting a fixed number of transactions at a time. Every new transaction takes
+// a permit before its connection is acquired and gives it back on completion; callers queue in FIFO order
+// for at most acquireTimeoutMs and get a 429 afterwards, instead of piling up inside the connection pool
+
+public class ConcurrencyLimitingJpaTransactionManager extends JpaTransactionManager {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long acquireTimeoutMs;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public ConcurrencyLimitingJpaTransactionManager(int maxConcurrency, long acquireTimeoutMs) {
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    // doBegin and doCleanupAfterCompletion are only called for new transactions: joined ones
+    // run on the permit of the transaction they join
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        acquire();
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotCreateTransactionException("Interrupted while waiting for a database permit", e);
+        }
+        if (!acquired) {
+            rejectedCount.incrementAndGet();
+            throw new TooManyRequestsException("The database is busy, please retry later.");
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
@@ -0,0 +1,63 @@
+package it.alicelazzeri.book_shelf_backend.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+// Replaces the auto-configured JPA transaction manager. With platform threads the Tomcat pool already
+// bounds how many requests reach the database; with virtual threads (spring.threads.virtual.enabled)
+// every request gets its own thread, so transactions are admitted through a limiter sized to the
+// Hikari pool. Open-in-view is off (see application.properties), so every database access runs in a
+// transaction and goes through the limiter: responses are serialized from fully fetched entities.
+
+@Configuration
+public class DatabaseConcurrencyConfig {
+
+    @Value("${bookshelf.db.limiter.enabled:${spring.threads.virtual.enabled:false}}")
+    private boolean limiterEnabled;
+
+    // 0: the size of the Hikari pool
+    @Value("${bookshelf.db.limiter.max-concurrency:0}")
+    private int maxConcurrency;
+
+    @Value("${bookshelf.db.limiter.acquire-timeout-ms:10000}")
+    private long acquireTimeoutMs;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int poolSize;
+
+    @Bean
+    public PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers,
+                                                         MeterRegistry meterRegistry) {
+        JpaTransactionManager transactionManager;
+        if (limiterEnabled) {
+            ConcurrencyLimitingJpaTransactionManager limitingTransactionManager =
+                    new ConcurrencyLimitingJpaTransactionManager(maxConcurrency > 0 ? maxConcurrency : poolSize, acquireTimeoutMs);
+            registerMetrics(limitingTransactionManager, meterRegistry);
+            transactionManager = limitingTransactionManager;
+        } else {
+            transactionManager = new JpaTransactionManager();
+        }
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+
+    private void registerMetrics(ConcurrencyLimitingJpaTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        Gauge.builder("bookshelf.db.limiter.active", transactionManager, ConcurrencyLimitingJpaTransactionManager::getActiveCount)
+                .description("Transactions holding a database permit")
+                .register(meterRegistry);
+        Gauge.builder("bookshelf.db.limiter.waiting", transactionManager, ConcurrencyLimitingJpaTransactionManager::getWaitingCount)
+                .description("Transactions waiting for a database permit")
+                .register(meterRegistry);
+        FunctionCounter.builder("bookshelf.db.limiter.rejected", transactionManager, ConcurrencyLimitingJpaTransactionManager::getRejectedCount)
+                .description("Transactions rejected after waiting acquire-timeout-ms for a permit")
+                .register(meterRegistry);
+    }
+}
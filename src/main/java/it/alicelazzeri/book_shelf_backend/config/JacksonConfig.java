@@ -0,0 +1,36 @@
+package it.alicelazzeri.book_shelf_backend.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Smile (application/x-jackson-smile) and CBOR (application/cbor) representations, negotiated through
+// Accept. The mappers come from the same builder as the JSON one, so they share its modules and
+// settings (ISO dates, filters); the converters replace Spring's defaults and keep their position
+// after JSON, so clients only get a binary format when they ask for it
+
+@Configuration
+public class JacksonConfig {
+
+    // filtered DTOs (see BookSummaryDTO) are written in full when no filter is given for the request
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer defaultFilterProvider() {
+        return builder -> builder.filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
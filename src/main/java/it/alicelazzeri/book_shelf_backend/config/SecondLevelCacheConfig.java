@@ -0,0 +1,89 @@
+package it.alicelazzeri.book_shelf_backend.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Hibernate second-level cache: Book by id, CatalogBook by ISBN, User by id and User by email (natural
+// id) are kept in size- and TTL-bounded Caffeine regions. Catalog entries are shared by many books and
+// never change, their region is larger and kept longer so the popular titles stay in memory. Writes made through Hibernate update the regions
+// transactionally; writes that bypass it (native/JDBC updates) evict explicitly.
+// Hits, misses and evictions are exposed as cache.* metrics tagged with the region name.
+
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String BOOKS_REGION = "books";
+    public static final String CATALOG_REGION = "catalog";
+    public static final String USERS_REGION = "users";
+    public static final String USERS_BY_EMAIL_REGION = "users-by-email";
+
+    @Value("${bookshelf.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bookshelf.cache.books.max-size:10000}")
+    private long booksMaxSize;
+
+    @Value("${bookshelf.cache.catalog.max-size:50000}")
+    private long catalogMaxSize;
+
+    @Value("${bookshelf.cache.catalog.ttl-minutes:60}")
+    private long catalogTtlMinutes;
+
+    @Value("${bookshelf.cache.users.max-size:2000}")
+    private long usersMaxSize;
+
+    @Value("${bookshelf.cache.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(MeterRegistry meterRegistry) {
+        // one manager per application context, so contexts sharing the JVM (tests) don't share regions
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("bookshelf-" + UUID.randomUUID()), provider.getDefaultClassLoader());
+        createRegion(cacheManager, meterRegistry, BOOKS_REGION, booksMaxSize, ttlMinutes);
+        createRegion(cacheManager, meterRegistry, CATALOG_REGION, catalogMaxSize, catalogTtlMinutes);
+        createRegion(cacheManager, meterRegistry, USERS_REGION, usersMaxSize, ttlMinutes);
+        createRegion(cacheManager, meterRegistry, USERS_BY_EMAIL_REGION, usersMaxSize, ttlMinutes);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            // every cached entity has its region created above
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private void createRegion(CacheManager cacheManager, MeterRegistry meterRegistry, String name, long maxSize, long ttlMinutes) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MINUTES.toNanos(ttlMinutes)));
+        // Hibernate already stores disassembled state, copying entries on every access is not needed
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        Cache<Object, Object> cache = cacheManager.createCache(name, configuration);
+        JCacheMetrics.monitor(meterRegistry, cache);
+    }
+}
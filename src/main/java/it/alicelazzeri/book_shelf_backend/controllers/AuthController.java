@@ -8,7 +8,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import it.alicelazzeri.book_shelf_backend.entities.User;
 import it.alicelazzeri.book_shelf_backend.exceptions.BadRequestException;
+import it.alicelazzeri.book_shelf_backend.payloads.auth.UserLoginRequestDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.auth.UserLoginResponseDTO;
 import it.alicelazzeri.book_shelf_backend.payloads.auth.UserRegisterRequestDTO;
+import it.alicelazzeri.book_shelf_backend.security.JwtTools;
 import it.alicelazzeri.book_shelf_backend.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -28,12 +31,40 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private JwtTools jwtTools;
+
+    // POST http://localhost:8080/auth/login
+
+    @PostMapping("/login")
+    @Operation(summary = "Log in", description = "Check the user's credentials and issue an access token",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "User logged in successfully",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = UserLoginResponseDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input data"),
+                    @ApiResponse(responseCode = "401", description = "Invalid email or password"),
+                    @ApiResponse(responseCode = "429", description = "Too many logins in progress")
+            })
+    public ResponseEntity<UserLoginResponseDTO> login(
+            @Parameter(description = "User credentials")
+            @RequestBody @Validated UserLoginRequestDTO loginPayload,
+            BindingResult validation) {
+
+        if (validation.hasErrors()) {
+            throw new BadRequestException(validation.getAllErrors());
+        }
+        User user = userService.authenticate(loginPayload.email(), loginPayload.password());
+        return ResponseEntity.ok(new UserLoginResponseDTO(
+                user.getId(), jwtTools.createToken(user), user.getFirstName(), user.getLastName(), user.getEmail()));
+    }
+
     @PostMapping("/register")
     @Operation(summary = "Register a new user", description = "Register a new user",
             responses = {
                     @ApiResponse(responseCode = "201", description = "User registered successfully",
                             content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
-                    @ApiResponse(responseCode = "400", description = "Invalid input data")
+                    @ApiResponse(responseCode = "400", description = "Invalid input data"),
+                    @ApiResponse(responseCode = "429", description = "Too many registrations in progress")
             })
     public ResponseEntity<User> registerUser(
             @Parameter(description = "User registration data")
@@ -52,7 +83,8 @@ public class AuthController {
             responses = {
                     @ApiResponse(responseCode = "201", description = "Admin registered successfully",
                             content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
-                    @ApiResponse(responseCode = "400", description = "Invalid input data")
+                    @ApiResponse(responseCode = "400", description = "Invalid input data"),
+                    @ApiResponse(responseCode = "429", description = "Too many registrations in progress")
             })
     public ResponseEntity<User> registerAdmin(
             @Parameter(description = "Admin registration data")
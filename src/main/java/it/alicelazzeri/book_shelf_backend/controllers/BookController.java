@@ -1,5 +1,7 @@
 package it.alicelazzeri.book_shelf_backend.controllers;
 
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.itextpdf.text.DocumentException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,12 +12,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import it.alicelazzeri.book_shelf_backend.entities.Book;
 import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.entities.enums.DuplicateBookMode;
 import it.alicelazzeri.book_shelf_backend.exceptions.BadRequestException;
 import it.alicelazzeri.book_shelf_backend.exceptions.NoContentException;
 import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
 import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
-import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.CompletedReadingsDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.CursorPageDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.PageDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.imports.BulkImportResultDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.validation.IsbnValidator;
+import it.alicelazzeri.book_shelf_backend.services.BookImportService;
 import it.alicelazzeri.book_shelf_backend.services.BookService;
+import it.alicelazzeri.book_shelf_backend.services.EntityTagService;
 import it.alicelazzeri.book_shelf_backend.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -24,13 +34,17 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/books")
@@ -42,26 +56,104 @@ public class BookController {
     private BookService bookService;
 
     @Autowired
-    private BookRepository bookRepository;
+    private UserService userService;
 
     @Autowired
-    private UserService userService;
+    private BookImportService bookImportService;
+
+    @Autowired
+    private EntityTagService entityTagService;
 
 
     // GET http://localhost:8080/api/books
 
     @GetMapping
-    @Operation(summary = "Get all books", description = "Retrieve all books")
+    @Operation(summary = "Get all books", description = "Retrieve a page of book summaries (without plot), also available as Smile or CBOR through Accept")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list of books",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Page.class))),
-            @ApiResponse(responseCode = "204", description = "No books found")
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = PageDTO.class))),
+            @ApiResponse(responseCode = "204", description = "No books found"),
+            @ApiResponse(responseCode = "400", description = "Unknown field in fields")
     })
-    public ResponseEntity<Page<Book>> getAllBooks(Pageable pageable) {
-        Page<Book> books = bookService.getAllBooks(pageable);
-        if (books.isEmpty()) {
+    public ResponseEntity<MappingJacksonValue> getAllBooks(
+            Pageable pageable,
+            @Parameter(description = "Comma-separated book fields to include, e.g. bookTitle,bookAuthor (id is always included)")
+            @RequestParam(value = "fields", required = false) String fields) {
+        PageDTO<BookSummaryDTO> books = bookService.getBookSummaries(pageable);
+        if (books.content().isEmpty()) {
             throw new NoContentException("No books found");
         }
+        MappingJacksonValue body = new MappingJacksonValue(books);
+        if (fields != null) {
+            body.setFilters(new SimpleFilterProvider().addFilter(BookSummaryDTO.FIELDS_FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(bookService.parseSummaryFields(fields))));
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    // GET http://localhost:8080/api/books/scroll?after={cursor}&size={size}&sort={property}&direction={asc|desc}
+
+    @GetMapping("/scroll")
+    @Operation(summary = "Scroll all books", description = "Retrieve books with keyset pagination, without total count")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved slice of books",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorPageDTO.class))),
+            @ApiResponse(responseCode = "204", description = "No books found"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or sort property")
+    })
+    public ResponseEntity<CursorPageDTO<Book>> scrollBooks(
+            @Parameter(description = "Cursor returned as nextCursor by the previous page") @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "Number of books per page (max 100)") @RequestParam(value = "size", defaultValue = "20") int size,
+            @Parameter(description = "Sort property: id, addingDate or bookTitle") @RequestParam(value = "sort", defaultValue = "id") String sort,
+            @Parameter(description = "Sort direction: asc or desc") @RequestParam(value = "direction", defaultValue = "asc") String direction) {
+        CursorPageDTO<Book> books = bookService.scrollBooks(null, sort, direction, after, size);
+        if (books.content().isEmpty()) {
+            throw new NoContentException("No books found");
+        }
+        return ResponseEntity.ok(books);
+    }
+
+    // GET http://localhost:8080/api/books/search?q={query}&userId={userId}&limit={limit}
+
+    @GetMapping("/search")
+    @Operation(summary = "Search books", description = "Full-text search over title, author and plot, best matches first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved matching books",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookSummaryDTO.class))),
+            @ApiResponse(responseCode = "204", description = "No books found"),
+            @ApiResponse(responseCode = "400", description = "Empty search query")
+    })
+    public ResponseEntity<List<BookSummaryDTO>> searchBooks(
+            @Parameter(description = "Search terms, each one matched as a prefix") @RequestParam("q") String query,
+            @Parameter(description = "ID of the user whose books are searched, all books when omitted") @RequestParam(value = "userId", required = false) Long userId,
+            @Parameter(description = "Maximum number of results (max 100)") @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        List<BookSummaryDTO> books = bookService.searchBooks(query, userId, limit);
+        if (books.isEmpty()) {
+            throw new NoContentException("No books found matching: " + query);
+        }
+        return ResponseEntity.ok(books);
+    }
+
+    // GET http://localhost:8080/api/books/isbn/{isbn}?userId={userId}
+
+    @GetMapping("/isbn/{isbn}")
+    @Operation(summary = "Get books by ISBN", description = "Retrieve the books with an ISBN-10 or ISBN-13, of all users or of one user")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))),
+            @ApiResponse(responseCode = "204", description = "No books found"),
+            @ApiResponse(responseCode = "400", description = "Invalid ISBN")
+    })
+    public ResponseEntity<List<Book>> getBooksByIsbn(
+            @Parameter(description = "ISBN-10 or ISBN-13, digits only") @PathVariable long isbn,
+            @Parameter(description = "ID of the user whose book is retrieved, all users when omitted") @RequestParam(value = "userId", required = false) Long userId) {
+        if (!IsbnValidator.isValidIsbn(isbn)) {
+            throw new BadRequestException("Invalid ISBN: " + isbn);
+        }
+        List<Book> books = bookService.getBooksByIsbn(isbn, userId);
+        if (books.isEmpty()) {
+            throw new NoContentException("No books found with ISBN: " + isbn);
+        }
         return ResponseEntity.ok(books);
     }
 
@@ -70,13 +162,20 @@ public class BookController {
     @GetMapping("/{id}")
     @Operation(summary = "Get book by ID", description = "Retrieve a book by ID")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved book",
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved book, with a strong ETag to be sent back in If-Match",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))),
+            @ApiResponse(responseCode = "304", description = "Book not modified since the ETag sent in If-None-Match"),
             @ApiResponse(responseCode = "404", description = "Book not found")
     })
-    public ResponseEntity<Book> getBookById(@Parameter(description = "ID of the book to be retrieved") @PathVariable long id) {
+    public ResponseEntity<Book> getBookById(@Parameter(description = "ID of the book to be retrieved") @PathVariable long id,
+                                            WebRequest webRequest) {
+        // revalidation only reads the version column, the book is loaded when it has changed
+        Optional<String> entityTag = entityTagService.getBookTag(id);
+        if (entityTag.isPresent() && webRequest.checkNotModified(entityTag.get())) {
+            return null;
+        }
         Book book = bookService.getBookById(id);
-        return ResponseEntity.ok(book);
+        return ResponseEntity.ok().eTag(EntityTagService.getTag(book)).body(book);
     }
 
     // GET http://localhost:8080/api/books/user/{userId}
@@ -86,39 +185,96 @@ public class BookController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved user's books",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = Page.class))),
+            @ApiResponse(responseCode = "304", description = "User's books not modified since the ETag sent in If-None-Match"),
             @ApiResponse(responseCode = "404", description = "User or books not found")
     })
     public ResponseEntity<Page<Book>> getBooksByUserId(
             @Parameter(description = "ID of the user whose books are to be retrieved") @PathVariable long userId,
-            Pageable pageable) {
+            Pageable pageable,
+            WebRequest webRequest) {
+        // the tag covers all the user's books (page parameters are part of the URL), computed before
+        // loading them so the page served is never older than its tag
+        Optional<String> entityTag = entityTagService.getUserBooksTag(userId);
+        if (entityTag.isPresent() && webRequest.checkNotModified(entityTag.get())) {
+            return null;
+        }
         User user = userService.getUserById(userId)
                 .orElseThrow(() -> new NotFoundException("User with id: " + userId + " not found."));
-        Page<Book> books = bookRepository.findByUserId(userId, pageable);
+        Page<Book> books = bookService.getBooksByUserId(userId, pageable);
         if (books.isEmpty()) {
             throw new NoContentException("No books found for user with id: " + userId);
         }
+        return ResponseEntity.ok().eTag(entityTag.orElse(null)).body(books);
+    }
+
+    // GET http://localhost:8080/api/books/user/{userId}/scroll?after={cursor}&size={size}&sort={property}&direction={asc|desc}
+
+    @GetMapping("/user/{userId}/scroll")
+    @Operation(summary = "Scroll books by User ID", description = "Retrieve a user's books with keyset pagination, without total count")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved slice of user's books",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorPageDTO.class))),
+            @ApiResponse(responseCode = "204", description = "No books found"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or sort property"),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    public ResponseEntity<CursorPageDTO<Book>> scrollBooksByUserId(
+            @Parameter(description = "ID of the user whose books are to be retrieved") @PathVariable long userId,
+            @Parameter(description = "Cursor returned as nextCursor by the previous page") @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "Number of books per page (max 100)") @RequestParam(value = "size", defaultValue = "20") int size,
+            @Parameter(description = "Sort property: id, addingDate or bookTitle") @RequestParam(value = "sort", defaultValue = "id") String sort,
+            @Parameter(description = "Sort direction: asc or desc") @RequestParam(value = "direction", defaultValue = "asc") String direction) {
+        userService.getUserById(userId)
+                .orElseThrow(() -> new NotFoundException("User with id: " + userId + " not found."));
+        CursorPageDTO<Book> books = bookService.scrollBooks(userId, sort, direction, after, size);
+        if (books.content().isEmpty()) {
+            throw new NoContentException("No books found for user with id: " + userId);
+        }
         return ResponseEntity.ok(books);
     }
 
-    // POST http://localhost:8080/api/books?userId={id}
+    // POST http://localhost:8080/api/books?userId={id}&onDuplicate={reject|increment|merge}
 
     @PostMapping
-    @Operation(summary = "Create a new book", description = "Create a new book")
+    @Operation(summary = "Create a new book", description = "Create a new book, or update the user's book with the same ISBN according to onDuplicate")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Book created successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))),
-            @ApiResponse(responseCode = "400", description = "Invalid input data")
+            @ApiResponse(responseCode = "200", description = "Book already on the user's shelf, incremented or merged",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "404", description = "User not found"),
+            @ApiResponse(responseCode = "409", description = "Book with the same ISBN already on the user's shelf")
     })
     public ResponseEntity<Book> saveBook(
             @Parameter(description = "Book data to be created")
             @RequestBody @Validated BookDTO bookPayload,
             BindingResult validation,
-            @RequestParam("userId") Long userId) {
+            @RequestParam("userId") Long userId,
+            @Parameter(description = "When the user already has the ISBN: reject (409), increment (adds the completed readings) or merge (updates the book)")
+            @RequestParam(value = "onDuplicate", defaultValue = "reject") String onDuplicate) {
         if (validation.hasErrors()) {
             throw new BadRequestException(validation.getAllErrors());
         }
-        Book savedBook = bookService.saveBook(bookPayload, userId);
-        return new ResponseEntity<>(savedBook, HttpStatus.CREATED);
+        BookService.SaveResult result = bookService.saveBook(bookPayload, userId, DuplicateBookMode.fromParameter(onDuplicate));
+        return new ResponseEntity<>(result.book(), result.created() ? HttpStatus.CREATED : HttpStatus.OK);
+    }
+
+    // POST http://localhost:8080/api/books/bulk?userId={id}
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    @Operation(summary = "Import books in bulk", description = "Import books from a JSON array, NDJSON or CSV (with header) body")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import completed, see the result for per-row errors",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkImportResultDTO.class))),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    public ResponseEntity<BulkImportResultDTO> importBooks(
+            @Parameter(description = "ID of the user owning the imported books") @RequestParam("userId") long userId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) throws IOException {
+        BulkImportResultDTO result = bookImportService.importBooks(userId, body, contentType);
+        return ResponseEntity.ok(result);
     }
 
     // PUT http://localhost:8080/api/books/{id}
@@ -129,17 +285,21 @@ public class BookController {
             @ApiResponse(responseCode = "200", description = "Book updated successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input data"),
-            @ApiResponse(responseCode = "404", description = "Book not found")
+            @ApiResponse(responseCode = "404", description = "Book not found"),
+            @ApiResponse(responseCode = "409", description = "Book modified concurrently or ISBN already on the user's shelf"),
+            @ApiResponse(responseCode = "412", description = "Book modified since the ETag sent in If-Match, or a weak ETag was sent")
     })
     public ResponseEntity<Book> updateBook(
             @Parameter(description = "ID of the book to be updated") @PathVariable long id,
             @Parameter(description = "Updated book data") @RequestBody @Validated BookDTO updatedBook,
-            BindingResult validation) {
+            BindingResult validation,
+            @Parameter(description = "Strong ETag of the version being updated (from GET /api/books/{id}), the update fails with 412 when the book has changed since; weak tags never match")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         if (validation.hasErrors()) {
             throw new BadRequestException(validation.getAllErrors());
         }
-        Book updatedBookEntity = bookService.updateBook(id, updatedBook);
-        return ResponseEntity.ok(updatedBookEntity);
+        Book updatedBookEntity = bookService.updateBook(id, updatedBook, EntityTagService.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(EntityTagService.getTag(updatedBookEntity)).body(updatedBookEntity);
     }
 
     // DELETE http://localhost:8080/api/books/{id}
@@ -155,23 +315,6 @@ public class BookController {
         return ResponseEntity.noContent().build();
     }
 
-    // PUT http://localhost:8080/api/books/{id}/cover
-
-    @PutMapping("/{id}/cover")
-    @Operation(summary = "Update a book cover", description = "Update the cover image of an existing book")
-    @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Book cover updated successfully",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))),
-            @ApiResponse(responseCode = "400", description = "Invalid input data"),
-            @ApiResponse(responseCode = "404", description = "Book not found")
-    })
-    public ResponseEntity<Book> updateBookCover(
-            @Parameter(description = "ID of the book to be updated") @PathVariable long id,
-            @Parameter(description = "Book cover file to be uploaded") @RequestParam("bookCoverFile") MultipartFile bookCoverFile) throws IOException {
-        Book updatedBookEntity = bookService.updateBookCover(id, bookCoverFile);
-        return ResponseEntity.ok(updatedBookEntity);
-    }
-
     // GET http://localhost:8080/api/books/generate-pdf?userId={userId}
 
     @GetMapping("/generate-pdf")
@@ -180,14 +323,24 @@ public class BookController {
             @ApiResponse(responseCode = "200", description = "PDF generated successfully"),
             @ApiResponse(responseCode = "404", description = "User not found")
     })
-    public ResponseEntity<byte[]> generateUserBooksPDF(@RequestParam("userId") Long userId) throws DocumentException, IOException {
-        ByteArrayOutputStream pdfOutput = bookService.generateUserBooksPDF(userId);
+    public ResponseEntity<StreamingResponseBody> generateUserBooksPDF(@RequestParam("userId") Long userId) {
+        User user = userService.getUserById(userId)
+                .orElseThrow(() -> new NotFoundException("User with id: " + userId + " not found."));
+
+        // the PDF is written directly to the response output stream instead of being buffered in memory
+        StreamingResponseBody pdfOutput = output -> {
+            try {
+                bookService.writeBooksPDF(user, output);
+            } catch (DocumentException e) {
+                throw new IOException("Error while generating PDF for user with id: " + userId, e);
+            }
+        };
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.setContentDispositionFormData("attachment", "user_books.pdf");
 
-        return ResponseEntity.ok().headers(headers).body(pdfOutput.toByteArray());
+        return ResponseEntity.ok().headers(headers).body(pdfOutput);
     }
 
     // PUT http://localhost:8080/api/books/{id}/increment-readings
@@ -196,11 +349,16 @@ public class BookController {
     @Operation(summary = "Increment completed readings", description = "Increment the number of completed readings for a book")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully incremented completed readings",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))),
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CompletedReadingsDTO.class))),
+            @ApiResponse(responseCode = "202", description = "Increment buffered, it will be written with the next flush",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CompletedReadingsDTO.class))),
             @ApiResponse(responseCode = "404", description = "Book not found")
     })
-    public ResponseEntity<Book> incrementCompletedReadings(@PathVariable long id) {
-        Book updatedBook = bookService.incrementCompletedReadings(id);
-        return ResponseEntity.ok(updatedBook);
+    public ResponseEntity<CompletedReadingsDTO> incrementCompletedReadings(@PathVariable long id) {
+        CompletedReadingsDTO readings = bookService.incrementCompletedReadings(id);
+        if (readings.completedReadings() == null) {
+            return ResponseEntity.accepted().body(readings);
+        }
+        return ResponseEntity.ok(readings);
     }
 }
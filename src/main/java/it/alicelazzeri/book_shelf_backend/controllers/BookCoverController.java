@@ -0,0 +1,126 @@
+package it.alicelazzeri.book_shelf_backend.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.payloads.covers.CoverUploadJobDTO;
+import it.alicelazzeri.book_shelf_backend.services.BookService;
+import it.alicelazzeri.book_shelf_backend.services.CoverCache;
+import it.alicelazzeri.book_shelf_backend.services.CoverUploadJob;
+import it.alicelazzeri.book_shelf_backend.services.CoverUploadService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+@RestController
+@RequestMapping("/api/books")
+@CrossOrigin
+@Tag(name = "Book Cover API", description = "Upload, processing and serving of book covers")
+public class BookCoverController {
+
+    @Autowired
+    private CoverUploadService coverUploadService;
+
+    @Autowired
+    private CoverCache coverCache;
+
+    @Autowired
+    private BookService bookService;
+
+    @Value("${bookshelf.covers.cache.cache-control:public, max-age=300}")
+    private String cacheControl;
+
+    // GET http://localhost:8080/api/books/{id}/cover
+
+    @GetMapping("/{id}/cover")
+    @Operation(summary = "Get a book cover", description = "Serve the cover image of a book from the local cover cache")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cover image"),
+            @ApiResponse(responseCode = "304", description = "Cover not modified (If-None-Match)"),
+            @ApiResponse(responseCode = "404", description = "Book or cover not found")
+    })
+    public void getBookCover(@Parameter(description = "ID of the book") @PathVariable long id,
+                             WebRequest webRequest,
+                             HttpServletResponse response) throws IOException {
+        Book book = bookService.getBookById(id);
+        CoverCache.CachedCover cover = coverCache.get(book.getBookCoverUrl());
+
+        // strong ETag: the content hash of the cover
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (webRequest.checkNotModified("\"" + cover.hash() + "\"")) {
+            return;
+        }
+        response.setContentType(cover.contentType());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(cover.length());
+        WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+        ByteBuffer content = cover.read();
+        while (content.hasRemaining()) {
+            output.write(content);
+        }
+    }
+
+    // PUT http://localhost:8080/api/books/{id}/cover
+
+    @PutMapping("/{id}/cover")
+    @Operation(summary = "Update a book cover",
+            description = "Queue the upload of a new cover image; thumbnails are generated and the book is updated asynchronously")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Cover upload queued",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CoverUploadJobDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "404", description = "Book not found"),
+            @ApiResponse(responseCode = "429", description = "Too many cover uploads in progress")
+    })
+    public ResponseEntity<CoverUploadJobDTO> updateBookCover(
+            @Parameter(description = "ID of the book to be updated") @PathVariable long id,
+            @Parameter(description = "Book cover file to be uploaded") @RequestParam("bookCoverFile") MultipartFile bookCoverFile) throws IOException {
+        CoverUploadJob job = coverUploadService.submitUpload(id, bookCoverFile);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/books/cover-uploads/" + job.getId()))
+                .body(mapToDTO(job));
+    }
+
+    // GET http://localhost:8080/api/books/cover-uploads/{jobId}
+
+    @GetMapping("/cover-uploads/{jobId}")
+    @Operation(summary = "Get cover upload status", description = "Retrieve status and resulting URLs of a cover upload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved cover upload status",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CoverUploadJobDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Cover upload not found or expired")
+    })
+    public ResponseEntity<CoverUploadJobDTO> getCoverUpload(@Parameter(description = "ID of the cover upload") @PathVariable String jobId) {
+        return ResponseEntity.ok(mapToDTO(coverUploadService.getJob(jobId)));
+    }
+
+    private CoverUploadJobDTO mapToDTO(CoverUploadJob job) {
+        return new CoverUploadJobDTO(
+                job.getId(),
+                job.getBookId(),
+                job.getStatus().name(),
+                job.getCoverUrl(),
+                job.getThumbnailUrls(),
+                job.getUploadAttempts(),
+                job.getCreatedAt(),
+                job.getCompletedAt(),
+                job.getErrorMessage()
+        );
+    }
+}
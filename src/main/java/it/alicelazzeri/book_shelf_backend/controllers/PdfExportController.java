@@ -0,0 +1,169 @@
+package it.alicelazzeri.book_shelf_backend.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
+import it.alicelazzeri.book_shelf_backend.payloads.exports.PdfExportJobDTO;
+import it.alicelazzeri.book_shelf_backend.services.PdfExportJob;
+import it.alicelazzeri.book_shelf_backend.services.PdfExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/books/exports")
+@CrossOrigin
+@Tag(name = "PDF Export API", description = "Asynchronous PDF exports of users' book lists")
+public class PdfExportController {
+
+    // Tomcat request attributes used to hand the file over to the connector (sendfile)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private PdfExportService pdfExportService;
+
+    // POST http://localhost:8080/api/books/exports?userId={userId}
+
+    @PostMapping
+    @Operation(summary = "Start a PDF export", description = "Queue the generation of a PDF of the user's book list")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Export queued",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = PdfExportJobDTO.class))),
+            @ApiResponse(responseCode = "404", description = "User not found"),
+            @ApiResponse(responseCode = "429", description = "Too many exports in progress")
+    })
+    public ResponseEntity<PdfExportJobDTO> startExport(
+            @Parameter(description = "ID of the user whose books are to be exported") @RequestParam("userId") long userId) {
+        PdfExportJob job = pdfExportService.submitExport(userId);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/books/exports/" + job.getId()))
+                .body(mapToDTO(job));
+    }
+
+    // GET http://localhost:8080/api/books/exports/{jobId}
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get PDF export status", description = "Retrieve status and progress of a PDF export")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved export status",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = PdfExportJobDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Export not found or expired")
+    })
+    public ResponseEntity<PdfExportJobDTO> getExport(@Parameter(description = "ID of the export") @PathVariable String jobId) {
+        return ResponseEntity.ok(mapToDTO(pdfExportService.getJob(jobId)));
+    }
+
+    // GET http://localhost:8080/api/books/exports/{jobId}/file
+
+    @GetMapping("/{jobId}/file")
+    @Operation(summary = "Download PDF export", description = "Download a completed PDF export, supports Range requests")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "PDF downloaded successfully"),
+            @ApiResponse(responseCode = "206", description = "Requested range of the PDF"),
+            @ApiResponse(responseCode = "404", description = "Export not found, expired or not completed"),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable")
+    })
+    public void downloadExport(@Parameter(description = "ID of the export") @PathVariable String jobId,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        PdfExportJob job = pdfExportService.getJob(jobId);
+        Path file = job.getFile();
+        if (job.getStatus() != PdfExportJob.Status.COMPLETED || file == null || !Files.exists(file)) {
+            throw new NotFoundException("Export with id: " + jobId + " is not available for download.");
+        }
+
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // only single ranges are honoured, multiple ranges are answered with the full content
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setContentLengthLong(count);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("user_books.pdf").build().toString());
+
+        // zero-copy: let Tomcat send the file with sendfile when the connector supports it,
+        // otherwise fall back to FileChannel.transferTo on the response stream
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (count > 0) {
+                long transferred = channel.transferTo(position, count, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                count -= transferred;
+            }
+        }
+    }
+
+    private PdfExportJobDTO mapToDTO(PdfExportJob job) {
+        String downloadUrl = job.getStatus() == PdfExportJob.Status.COMPLETED ?
+                "/api/books/exports/" + job.getId() + "/file" : null;
+        return new PdfExportJobDTO(
+                job.getId(),
+                job.getUserId(),
+                job.getStatus().name(),
+                job.getBooksWritten(),
+                job.getTotalBooks(),
+                job.getProgress(),
+                job.getCreatedAt(),
+                job.getCompletedAt(),
+                job.getExpiresAt(),
+                downloadUrl,
+                job.getErrorMessage()
+        );
+    }
+}
@@ -0,0 +1,39 @@
+package it.alicelazzeri.book_shelf_backend.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.alicelazzeri.book_shelf_backend.entities.BookStats;
+import it.alicelazzeri.book_shelf_backend.payloads.stats.BookStatsDTO;
+import it.alicelazzeri.book_shelf_backend.services.BookStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/stats")
+@CrossOrigin
+@Tag(name = "Statistics API", description = "Reading statistics of the whole library")
+public class StatsController {
+
+    @Autowired
+    private BookStatsService bookStatsService;
+
+    // GET http://localhost:8080/api/stats?top={top}&months={months}
+
+    @GetMapping
+    @Operation(summary = "Get library reading statistics", description = "Totals of books and readings, top authors and additions per month of all users, refreshed every minute (bookshelf.stats.global.fold-interval-ms)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved statistics",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookStatsDTO.class)))
+    })
+    public ResponseEntity<BookStatsDTO> getStats(
+            @Parameter(description = "Number of top authors (by books)") @RequestParam(value = "top", defaultValue = "10") int top,
+            @Parameter(description = "Number of most recent months with additions") @RequestParam(value = "months", defaultValue = "12") int months) {
+        return ResponseEntity.ok(bookStatsService.getStats(BookStats.GLOBAL_USER_ID, top, months));
+    }
+}
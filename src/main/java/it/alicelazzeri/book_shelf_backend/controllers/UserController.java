@@ -13,15 +13,21 @@ import it.alicelazzeri.book_shelf_backend.exceptions.NoContentException;
 import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
 import it.alicelazzeri.book_shelf_backend.payloads.auth.UserRegisterRequestDTO;
 import it.alicelazzeri.book_shelf_backend.payloads.auth.UserUpdateRequestDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.UserSummaryDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.stats.BookStatsDTO;
+import it.alicelazzeri.book_shelf_backend.services.BookStatsService;
+import it.alicelazzeri.book_shelf_backend.services.EntityTagService;
 import it.alicelazzeri.book_shelf_backend.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -33,17 +39,26 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private EntityTagService entityTagService;
+
+    @Autowired
+    private BookStatsService bookStatsService;
+
     // GET http://localhost:8080/api/users
 
     @GetMapping
-    @Operation(summary = "Get all users", description = "Retrieve all users")
+    @Operation(summary = "Get all users", description = "Retrieve a page of users, optionally with a summary of their books")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieve list",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Page.class))),
             @ApiResponse(responseCode = "204", description = "No users found")
     })
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
+    public ResponseEntity<Page<UserSummaryDTO>> getAllUsers(
+            Pageable pageable,
+            @Parameter(description = "Set to 'books' to include the books of each user")
+            @RequestParam(value = "include", required = false) String include) {
+        Page<UserSummaryDTO> users = userService.getUsers(pageable, "books".equals(include));
         if (users.isEmpty()) {
             throw new NoContentException("No users were found.");
         } else {
@@ -58,13 +73,38 @@ public class UserController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved user",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
+            @ApiResponse(responseCode = "304", description = "User not modified since the ETag sent in If-None-Match"),
             @ApiResponse(responseCode = "404", description = "User not found")
     })
-    public ResponseEntity<User> getUserById(@Parameter(description = "ID of the user to be retrieved") @PathVariable long id) {
-        Optional<User> userOptional = userService.getUserById(id);
+    public ResponseEntity<User> getUserById(@Parameter(description = "ID of the user to be retrieved") @PathVariable long id,
+                                            WebRequest webRequest) {
+        // revalidation only reads the version columns, user and books are loaded when they have changed
+        Optional<String> entityTag = entityTagService.getUserTag(id);
+        if (entityTag.isPresent() && webRequest.checkNotModified(entityTag.get())) {
+            return null;
+        }
+        Optional<User> userOptional = userService.getUserWithBooksById(id);
         User user = userOptional.orElseThrow(
                 () -> new NotFoundException("User with id: " + id + " not found."));
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok().eTag(entityTag.orElse(null)).body(user);
+    }
+
+    // GET http://localhost:8080/api/users/{id}/stats?top={top}&months={months}
+
+    @GetMapping("/{id}/stats")
+    @Operation(summary = "Get user reading statistics", description = "Totals of books and readings, top authors and additions per month of a user")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved statistics",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookStatsDTO.class))),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    public ResponseEntity<BookStatsDTO> getUserStats(
+            @Parameter(description = "ID of the user") @PathVariable long id,
+            @Parameter(description = "Number of top authors (by books)") @RequestParam(value = "top", defaultValue = "10") int top,
+            @Parameter(description = "Number of most recent months with additions") @RequestParam(value = "months", defaultValue = "12") int months) {
+        userService.getUserById(id)
+                .orElseThrow(() -> new NotFoundException("User with id: " + id + " not found."));
+        return ResponseEntity.ok(bookStatsService.getStats(id, top, months));
     }
 
     // // POST http://localhost:8080/api/users
@@ -74,7 +114,8 @@ public class UserController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "User created successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
-            @ApiResponse(responseCode = "400", description = "Invalid input data")
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "429", description = "Too many registrations in progress")
     })
     public ResponseEntity<User> saveUser(
             @Parameter(description = "User data to be created")
@@ -96,7 +137,8 @@ public class UserController {
             @ApiResponse(responseCode = "200", description = "User updated successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input data"),
-            @ApiResponse(responseCode = "404", description = "User not found")
+            @ApiResponse(responseCode = "404", description = "User not found"),
+            @ApiResponse(responseCode = "429", description = "Too many password changes in progress")
     })
     public ResponseEntity<User> updateUser(
             @Parameter(description = "ID of the user to be updated")
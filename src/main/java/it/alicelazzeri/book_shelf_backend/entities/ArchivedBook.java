@@ -0,0 +1,56 @@
+package it.alicelazzeri.book_shelf_backend.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Cold copy of a deleted book, moved out of the books table by the BookArchiver. The id is the one
+// the book had; rows are written in bulk by SQL and only read back for history, so the table carries
+// no foreign key, no version and no index besides the owner's
+
+@Entity
+@Table(name = "books_archive", indexes = {
+        @Index(name = "idx_books_archive_user_id", columnList = "user_id")
+})
+@Data
+@NoArgsConstructor
+public class ArchivedBook {
+
+    @Id
+    private long id;
+
+    @Column(name = "user_id", nullable = false)
+    private long userId;
+
+    // the shared description stays in catalog_books, catalog entries are never deleted; the book's own
+    // title and description (see Book) move with it
+    @Column(nullable = false)
+    private long isbnCode;
+
+    @Column
+    private String bookTitle;
+
+    @Column
+    private String bookAuthor;
+
+    @Column(columnDefinition = "TEXT")
+    private String bookPlot;
+
+    @Column
+    private String bookCoverUrl;
+
+    @Column(nullable = false)
+    private int completedReadings;
+
+    @Column(nullable = false)
+    private LocalDate addingDate;
+
+    @Column(nullable = false)
+    private LocalDate deletingDate;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
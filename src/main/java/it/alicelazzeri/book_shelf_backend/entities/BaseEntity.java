@@ -8,6 +8,11 @@ import lombok.Data;
 public abstract class BaseEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entity_seq")
-    @SequenceGenerator(name = "entity_seq", sequenceName = "entity_seq")
+    // ids are allocated in blocks matching the JDBC batch size (pooled optimizer), not one nextval per insert
+    @SequenceGenerator(name = "entity_seq", sequenceName = "entity_seq", allocationSize = 100)
     private long id;
+
+    // optimistic locking, also used as the weak ETag of the resource
+    @Version
+    private long version;
 }
@@ -7,26 +7,49 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.LocalDate;
 
+// Shelf entry of a user: what is specific to the user's copy (adding date, readings, title, overrides of
+// the description and cover), the description shared by the copies is in the catalog entry of its ISBN
+
 @Entity
+// indexes are partial on live rows (deleting_date is null), they are created by the BookSchemaInitializer
 @Table(name = "books")
+// soft delete: deleting a book stamps deletingDate, deleted books are invisible to every entity query
+// and are moved to books_archive by the BookArchiver after the retention period
+@SQLDelete(sql = "UPDATE books SET deleting_date = current_date, version = version + 1 WHERE id = ? AND version = ?")
+@SQLRestriction("deleting_date is null")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder(setterPrefix = "with")
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "books")
 public class Book extends BaseEntity {
 
+    // shared description of the edition, the ISBN is the foreign key
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "isbn_code", nullable = false, foreignKey = @ForeignKey(name = "fk_books_catalog_books"))
+    @JsonIgnore
+    private CatalogBook catalog;
+
+    // the title on the user's shelf, always set: it is also the key of the title ordering (see BookSortKey)
     @Column(nullable = false)
     private String bookTitle;
 
-    @Column(nullable = false)
+    // the user's own description, set together when it differs from the catalog one (title included),
+    // null when the catalog description is used
+    @Column
     private String bookAuthor;
 
-    @Column(nullable = false)
-    private long isbnCode;
+    @Column(columnDefinition = "TEXT")
+    private String bookPlot;
 
     @Column(nullable = false)
     private LocalDate addingDate;
@@ -34,17 +57,44 @@ public class Book extends BaseEntity {
     @Column
     private LocalDate deletingDate;
 
-    @Column(nullable = false, columnDefinition = "TEXT")
-    private String bookPlot;
-
     @Column(nullable = false)
     private int completedReadings;
 
-    @Column(nullable = false)
+    // the user's own cover, null when the catalog cover is used
+    @Column
     private String bookCoverUrl;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     @JsonIgnore
     private User user;
+
+    // catalog properties exposed on the book, so the API representation is unchanged
+
+    public long getIsbnCode() {
+        return catalog.getIsbnCode();
+    }
+
+    public String getBookAuthor() {
+        return bookAuthor != null ? bookAuthor : catalog.getBookAuthor();
+    }
+
+    public String getBookPlot() {
+        return bookPlot != null ? bookPlot : catalog.getBookPlot();
+    }
+
+    public String getBookCoverUrl() {
+        return bookCoverUrl != null ? bookCoverUrl : catalog.getBookCoverUrl();
+    }
+
+    // Writes the user's description of the book, the catalog entry is never changed: author and plot
+    // are only kept when title, author or plot differ from the catalog ones
+    public void describe(String title, String author, String plot) {
+        boolean ownDescription = !catalog.getBookTitle().equals(title)
+                || !catalog.getBookAuthor().equals(author)
+                || !catalog.getBookPlot().equals(plot);
+        this.bookTitle = title;
+        this.bookAuthor = ownDescription ? author : null;
+        this.bookPlot = ownDescription ? plot : null;
+    }
 }
@@ -0,0 +1,52 @@
+package it.alicelazzeri.book_shelf_backend.entities;
+
+import it.alicelazzeri.book_shelf_backend.entities.enums.StatsDimension;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// Rollup row of the reading statistics: number of books and completed readings of a user (userId 0
+// for the whole library) in total, per author or per month of addition. Rows are maintained by
+// applying deltas (see BookStatsService), never recomputed on read
+
+@Entity
+@Table(name = "book_stats")
+@IdClass(BookStats.Key.class)
+@Data
+@NoArgsConstructor
+public class BookStats {
+
+    public static final long GLOBAL_USER_ID = 0;
+
+    @Id
+    @Column(name = "user_id")
+    private long userId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private StatsDimension dimension;
+
+    // author name, month (yyyy-MM) or empty for the totals
+    @Id
+    @Column(name = "stat_key")
+    private String statKey;
+
+    @Column(nullable = false)
+    private long books;
+
+    @Column(nullable = false)
+    private long readings;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private long userId;
+        private StatsDimension dimension;
+        private String statKey;
+    }
+}
@@ -0,0 +1,45 @@
+package it.alicelazzeri.book_shelf_backend.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
+// Canonical description of an edition, keyed by ISBN and shared by every shelf entry (Book) with that
+// ISBN, so authors, plots and covers are stored once per distinct book instead of once per user.
+// Entries are created on first use by the CatalogService and never updated afterwards: a user's
+// edit is kept on the user's Book. They are read through their own second-level cache region,
+// which keeps the hot titles in memory
+
+@Entity
+@Table(name = "catalog_books")
+@Immutable
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(setterPrefix = "with")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "catalog")
+public class CatalogBook {
+
+    @Id
+    private long isbnCode;
+
+    @Column(nullable = false)
+    private String bookTitle;
+
+    @Column(nullable = false)
+    private String bookAuthor;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String bookPlot;
+
+    @Column(nullable = false)
+    private String bookCoverUrl;
+}
@@ -0,0 +1,57 @@
+package it.alicelazzeri.book_shelf_backend.entities;
+
+import it.alicelazzeri.book_shelf_backend.entities.enums.EmailStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Email waiting to be delivered: written in the transaction that produces it and sent later by
+// the EmailDispatcher, so SMTP latency and failures never reach the request
+
+@Entity
+@Table(name = "email_outbox", indexes = {
+        // the dispatcher polls the due pending messages
+        @Index(name = "idx_email_outbox_status_next_attempt_at", columnList = "status, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+public class EmailOutboxMessage extends BaseEntity {
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private EmailStatus status = EmailStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    public EmailOutboxMessage(String recipient, String subject, String body) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
@@ -6,6 +6,11 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.OptimisticLock;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -18,6 +23,9 @@ import java.util.List;
 @Table(name = "users")
 @Data
 @NoArgsConstructor
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "users-by-email")
 @JsonIgnoreProperties({"password", "active", "authorities", "enabled", "credentialsNonExpired", "accountNonExpired", "accountNonLocked"})
 public class User extends BaseEntity implements UserDetails {
 
@@ -29,6 +37,8 @@ public class User extends BaseEntity implements UserDetails {
     @Size(min = 3, max = 30, message = "Last name should be between 3 and 30 characters")
     private String lastName;
 
+    // natural id: lookups by email go through the users-by-email cache region
+    @NaturalId(mutable = true)
     @Column(nullable = false, unique = true)
     private String email;
 
@@ -44,6 +54,8 @@ public class User extends BaseEntity implements UserDetails {
     private Role role;
 
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
+    // books are versioned on their own, adding or removing one doesn't bump the user's version
+    @OptimisticLock(excluded = true)
     @JsonIgnoreProperties({"user", "hibernateLazyInitializer", "handler"})
     private List<Book> books = new ArrayList<>();
 
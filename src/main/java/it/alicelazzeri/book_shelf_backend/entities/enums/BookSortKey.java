@@ -0,0 +1,57 @@
+package it.alicelazzeri.book_shelf_backend.entities.enums;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.exceptions.BadRequestException;
+
+import java.time.LocalDate;
+
+// Sort columns supported by keyset pagination, each backed by (column, id) and (user_id, column, id)
+// indexes on the live books (see BookSchemaInitializer); the title is the one kept on the user's book
+
+public enum BookSortKey {
+    ID("id", "id"),
+    ADDING_DATE("addingDate", "addingDate"),
+    BOOK_TITLE("bookTitle", "bookTitle");
+
+    private final String property;
+    private final String path;
+
+    BookSortKey(String property, String path) {
+        this.property = property;
+        this.path = path;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    // attribute path from the book in JPQL
+    public String getPath() {
+        return path;
+    }
+
+    public static BookSortKey fromProperty(String property) {
+        for (BookSortKey sortKey : values()) {
+            if (sortKey.property.equals(property)) {
+                return sortKey;
+            }
+        }
+        throw new BadRequestException("Unsupported sort property: " + property + ". Use id, addingDate or bookTitle.");
+    }
+
+    public Object extractValue(Book book) {
+        return switch (this) {
+            case ID -> book.getId();
+            case ADDING_DATE -> book.getAddingDate();
+            case BOOK_TITLE -> book.getBookTitle();
+        };
+    }
+
+    public Object parseValue(String value) {
+        return switch (this) {
+            case ID -> Long.parseLong(value);
+            case ADDING_DATE -> LocalDate.parse(value);
+            case BOOK_TITLE -> value;
+        };
+    }
+}
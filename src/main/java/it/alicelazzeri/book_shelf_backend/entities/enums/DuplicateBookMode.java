@@ -0,0 +1,29 @@
+package it.alicelazzeri.book_shelf_backend.entities.enums;
+
+import it.alicelazzeri.book_shelf_backend.exceptions.BadRequestException;
+
+// What POST /api/books does when the user already has a live book with the same ISBN
+
+public enum DuplicateBookMode {
+    // the book is not saved, 409
+    REJECT("reject"),
+    // the completed readings of the new copy are added to the existing book
+    INCREMENT("increment"),
+    // the existing book is updated with the new data
+    MERGE("merge");
+
+    private final String parameter;
+
+    DuplicateBookMode(String parameter) {
+        this.parameter = parameter;
+    }
+
+    public static DuplicateBookMode fromParameter(String parameter) {
+        for (DuplicateBookMode mode : values()) {
+            if (mode.parameter.equalsIgnoreCase(parameter)) {
+                return mode;
+            }
+        }
+        throw new BadRequestException("Unsupported duplicate mode: " + parameter + ". Use reject, increment or merge.");
+    }
+}
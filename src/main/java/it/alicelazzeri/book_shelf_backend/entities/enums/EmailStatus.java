@@ -0,0 +1,7 @@
+package it.alicelazzeri.book_shelf_backend.entities.enums;
+
+public enum EmailStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,8 @@
+package it.alicelazzeri.book_shelf_backend.entities.enums;
+
+// declaration order is the order in which rollup rows are locked, TOTAL first
+public enum StatsDimension {
+    TOTAL,
+    AUTHOR,
+    MONTH
+}
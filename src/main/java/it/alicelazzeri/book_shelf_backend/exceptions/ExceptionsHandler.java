@@ -4,8 +4,10 @@ import it.alicelazzeri.book_shelf_backend.payloads.exceptions.ExceptionResponseD
 import it.alicelazzeri.book_shelf_backend.payloads.exceptions.ExceptionsListResponseDTO;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -65,4 +67,46 @@ public class ExceptionsHandler extends ResponseEntityExceptionHandler {
         ResponseEntity<ExceptionResponseDTO> responseEntity = new ResponseEntity<>(payload, HttpStatus.NOT_FOUND);
         return responseEntity;
     }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    protected ResponseEntity<ExceptionResponseDTO> handleTooManyRequestsException(TooManyRequestsException e) {
+        ExceptionResponseDTO payload = new ExceptionResponseDTO(e.getMessage(), HttpStatus.TOO_MANY_REQUESTS, LocalDateTime.now());
+        ResponseEntity<ExceptionResponseDTO> responseEntity = new ResponseEntity<>(payload, HttpStatus.TOO_MANY_REQUESTS);
+        return responseEntity;
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    protected ResponseEntity<ExceptionResponseDTO> handlePreconditionFailedException(PreconditionFailedException e) {
+        ExceptionResponseDTO payload = new ExceptionResponseDTO(e.getMessage(), HttpStatus.PRECONDITION_FAILED, LocalDateTime.now());
+        ResponseEntity<ExceptionResponseDTO> responseEntity = new ResponseEntity<>(payload, HttpStatus.PRECONDITION_FAILED);
+        return responseEntity;
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    protected ResponseEntity<ExceptionResponseDTO> handleConflictException(ConflictException e) {
+        ExceptionResponseDTO payload = new ExceptionResponseDTO(e.getMessage(), HttpStatus.CONFLICT, LocalDateTime.now());
+        ResponseEntity<ExceptionResponseDTO> responseEntity = new ResponseEntity<>(payload, HttpStatus.CONFLICT);
+        return responseEntity;
+    }
+
+    // a unique index rejected the row, e.g. a concurrent insert of the same book committed first
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    protected ResponseEntity<ExceptionResponseDTO> handleDataIntegrityViolationException(DataIntegrityViolationException e) {
+        ExceptionResponseDTO payload = new ExceptionResponseDTO("The resource conflicts with existing data, please retry.", HttpStatus.CONFLICT, LocalDateTime.now());
+        ResponseEntity<ExceptionResponseDTO> responseEntity = new ResponseEntity<>(payload, HttpStatus.CONFLICT);
+        return responseEntity;
+    }
+
+    // a concurrent update committed first (version check failed on flush)
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    protected ResponseEntity<ExceptionResponseDTO> handleOptimisticLockingFailureException(ObjectOptimisticLockingFailureException e) {
+        ExceptionResponseDTO payload = new ExceptionResponseDTO("The resource was modified concurrently, please retry.", HttpStatus.CONFLICT, LocalDateTime.now());
+        ResponseEntity<ExceptionResponseDTO> responseEntity = new ResponseEntity<>(payload, HttpStatus.CONFLICT);
+        return responseEntity;
+    }
 }
@@ -0,0 +1,17 @@
+package it.alicelazzeri.book_shelf_backend.payloads.covers;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public record CoverUploadJobDTO(
+        String jobId,
+        long bookId,
+        String status,
+        String coverUrl,
+        Map<Integer, String> thumbnailUrls,
+        int uploadAttempts,
+        LocalDateTime createdAt,
+        LocalDateTime completedAt,
+        String errorMessage
+) {
+}
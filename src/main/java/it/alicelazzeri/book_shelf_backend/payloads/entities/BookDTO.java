@@ -1,5 +1,6 @@
 package it.alicelazzeri.book_shelf_backend.payloads.entities;
 
+import it.alicelazzeri.book_shelf_backend.payloads.validation.Isbn;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 
@@ -12,6 +13,7 @@ public record BookDTO(
         @NotNull(message = "Book author is mandatory")
         @NotEmpty(message = "Book author cannot be empty")
         String bookAuthor,
+        @Isbn
         long isbnCode,
         LocalDate addingDate,
         LocalDate deletingDate,
@@ -0,0 +1,22 @@
+package it.alicelazzeri.book_shelf_backend.payloads.entities;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import java.time.LocalDate;
+
+// Book without its plot, used by listings where the full TEXT column is not needed.
+// The filter narrows the properties written when a listing is requested with ?fields=
+
+@JsonFilter(BookSummaryDTO.FIELDS_FILTER)
+public record BookSummaryDTO(
+        long id,
+        long userId,
+        String bookTitle,
+        String bookAuthor,
+        long isbnCode,
+        LocalDate addingDate,
+        int completedReadings,
+        String bookCoverUrl
+) {
+    public static final String FIELDS_FILTER = "bookSummaryFields";
+}
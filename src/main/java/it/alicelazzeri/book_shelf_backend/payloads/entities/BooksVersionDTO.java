@@ -0,0 +1,10 @@
+package it.alicelazzeri.book_shelf_backend.payloads.entities;
+
+// Aggregate version of a user's books: count, sum of the ids and sum of the versions
+
+public record BooksVersionDTO(
+        long count,
+        long idSum,
+        long versionSum
+) {
+}
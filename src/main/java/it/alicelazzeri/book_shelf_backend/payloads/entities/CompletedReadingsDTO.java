@@ -0,0 +1,10 @@
+package it.alicelazzeri.book_shelf_backend.payloads.entities;
+
+// completedReadings is null in buffered mode, where the increment is still pending in memory
+
+public record CompletedReadingsDTO(
+        long bookId,
+        Integer completedReadings,
+        long pendingReadings
+) {
+}
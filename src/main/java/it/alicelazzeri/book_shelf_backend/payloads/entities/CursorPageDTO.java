@@ -0,0 +1,13 @@
+package it.alicelazzeri.book_shelf_backend.payloads.entities;
+
+import java.util.List;
+
+// Slice-style page for keyset pagination: no total count, nextCursor is passed back as "after"
+
+public record CursorPageDTO<T>(
+        List<T> content,
+        int size,
+        boolean hasNext,
+        String nextCursor
+) {
+}
@@ -0,0 +1,19 @@
+package it.alicelazzeri.book_shelf_backend.payloads.entities;
+
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+// Slim page envelope: only the paging values clients use, independent of how Spring serializes Page
+
+public record PageDTO<T>(
+        List<T> content,
+        int page,
+        int size,
+        long totalElements,
+        int totalPages
+) {
+    public static <T> PageDTO<T> of(Page<T> page) {
+        return new PageDTO<>(page.getContent(), page.getNumber(), page.getSize(), page.getTotalElements(), page.getTotalPages());
+    }
+}
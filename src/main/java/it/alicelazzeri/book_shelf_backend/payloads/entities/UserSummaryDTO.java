@@ -0,0 +1,26 @@
+package it.alicelazzeri.book_shelf_backend.payloads.entities;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import it.alicelazzeri.book_shelf_backend.entities.enums.Role;
+
+import java.util.List;
+
+public record UserSummaryDTO(
+        long id,
+        String firstName,
+        String lastName,
+        String email,
+        String avatarUrl,
+        Role role,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        List<BookSummaryDTO> books
+) {
+    // used by the JPQL constructor expression, books are attached afterwards only when requested
+    public UserSummaryDTO(long id, String firstName, String lastName, String email, String avatarUrl, Role role) {
+        this(id, firstName, lastName, email, avatarUrl, role, null);
+    }
+
+    public UserSummaryDTO withBooks(List<BookSummaryDTO> books) {
+        return new UserSummaryDTO(id, firstName, lastName, email, avatarUrl, role, books);
+    }
+}
@@ -0,0 +1,18 @@
+package it.alicelazzeri.book_shelf_backend.payloads.exports;
+
+import java.time.LocalDateTime;
+
+public record PdfExportJobDTO(
+        String jobId,
+        long userId,
+        String status,
+        long booksWritten,
+        long totalBooks,
+        int progress,
+        LocalDateTime createdAt,
+        LocalDateTime completedAt,
+        LocalDateTime expiresAt,
+        String downloadUrl,
+        String errorMessage
+) {
+}
@@ -0,0 +1,7 @@
+package it.alicelazzeri.book_shelf_backend.payloads.imports;
+
+public record BulkImportErrorDTO(
+        long row,
+        String message
+) {
+}
@@ -0,0 +1,11 @@
+package it.alicelazzeri.book_shelf_backend.payloads.imports;
+
+import java.util.List;
+
+public record BulkImportResultDTO(
+        long totalRows,
+        long importedRows,
+        long failedRows,
+        List<BulkImportErrorDTO> errors
+) {
+}
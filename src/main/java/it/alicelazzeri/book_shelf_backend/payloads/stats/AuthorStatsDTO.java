@@ -0,0 +1,8 @@
+package it.alicelazzeri.book_shelf_backend.payloads.stats;
+
+public record AuthorStatsDTO(
+        String author,
+        long books,
+        long readings
+) {
+}
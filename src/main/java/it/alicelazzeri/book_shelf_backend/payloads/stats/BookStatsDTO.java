@@ -0,0 +1,11 @@
+package it.alicelazzeri.book_shelf_backend.payloads.stats;
+
+import java.util.List;
+
+public record BookStatsDTO(
+        long books,
+        long readings,
+        List<AuthorStatsDTO> topAuthors,
+        List<MonthlyAdditionsDTO> additionsPerMonth
+) {
+}
@@ -0,0 +1,8 @@
+package it.alicelazzeri.book_shelf_backend.payloads.stats;
+
+// month as yyyy-MM
+public record MonthlyAdditionsDTO(
+        String month,
+        long books
+) {
+}
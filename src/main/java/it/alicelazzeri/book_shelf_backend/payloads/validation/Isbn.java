@@ -0,0 +1,22 @@
+package it.alicelazzeri.book_shelf_backend.payloads.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// ISBN-13 (978/979 prefix) or ISBN-10 with a valid check digit, see IsbnValidator
+
+@Target({ElementType.FIELD, ElementType.PARAMETER, ElementType.RECORD_COMPONENT})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = IsbnValidator.class)
+public @interface Isbn {
+    String message() default "ISBN code is not a valid ISBN-10 or ISBN-13";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,69 @@
+package it.alicelazzeri.book_shelf_backend.payloads.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+// ISBN checks on the numeric value, digit by digit with % and /, so validating a book never builds a
+// String. An ISBN-10 with an X check digit cannot be stored in a long: it has to be sent as ISBN-13
+
+public class IsbnValidator implements ConstraintValidator<Isbn, Long> {
+
+    private static final long ISBN13_MIN = 9_780_000_000_000L;
+    private static final long ISBN13_MAX = 9_799_999_999_999L;
+    private static final long ISBN10_MAX = 9_999_999_999L;
+
+    @Override
+    public boolean isValid(Long value, ConstraintValidatorContext context) {
+        return value == null || isValidIsbn(value);
+    }
+
+    public static boolean isValidIsbn(long isbn) {
+        if (isbn >= ISBN13_MIN && isbn <= ISBN13_MAX) {
+            return isValidIsbn13(isbn);
+        }
+        return isbn > 0 && isbn <= ISBN10_MAX && isValidIsbn10(isbn);
+    }
+
+    // weights 1 and 3 alternating from the check digit, the sum is a multiple of 10
+    static boolean isValidIsbn13(long isbn) {
+        int sum = 0;
+        for (int position = 0; position < 13; position++) {
+            int digit = (int) (isbn % 10);
+            sum += (position & 1) == 0 ? digit : digit * 3;
+            isbn /= 10;
+        }
+        return sum % 10 == 0;
+    }
+
+    // weights 1 to 10 from the check digit, the sum is a multiple of 11 (leading zeros are implied)
+    static boolean isValidIsbn10(long isbn) {
+        int sum = 0;
+        for (int weight = 1; weight <= 10; weight++) {
+            sum += (int) (isbn % 10) * weight;
+            isbn /= 10;
+        }
+        return sum % 11 == 0;
+    }
+
+    // Canonical form used for storage and lookups: a valid ISBN-10 becomes the equivalent 978 ISBN-13,
+    // so the same edition is detected as a duplicate whichever form it is sent in. Anything else is
+    // returned unchanged
+    public static long toIsbn13(long isbn) {
+        if (isbn <= 0 || isbn > ISBN10_MAX || !isValidIsbn10(isbn)) {
+            return isbn;
+        }
+        return withCheckDigit(ISBN13_MIN / 10 + isbn / 10);
+    }
+
+    // ISBN-13 made of the given first 12 digits (prefix, group, publisher and title) and their check digit
+    public static long withCheckDigit(long digits) {
+        int sum = 0;
+        long remaining = digits;
+        for (int position = 1; position < 13; position++) {
+            int digit = (int) (remaining % 10);
+            sum += (position & 1) == 0 ? digit : digit * 3;
+            remaining /= 10;
+        }
+        return digits * 10 + (10 - sum % 10) % 10;
+    }
+}
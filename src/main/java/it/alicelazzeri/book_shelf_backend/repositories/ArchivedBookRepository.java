@@ -0,0 +1,18 @@
+package it.alicelazzeri.book_shelf_backend.repositories;
+
+import it.alicelazzeri.book_shelf_backend.entities.ArchivedBook;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ArchivedBookRepository extends JpaRepository<ArchivedBook, Long> {
+
+    long countByUserId(long userId);
+
+    @Modifying
+    @Query("delete from ArchivedBook a where a.userId = :userId")
+    int deleteByUserId(@Param("userId") long userId);
+}
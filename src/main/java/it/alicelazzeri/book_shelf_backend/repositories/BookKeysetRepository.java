@@ -0,0 +1,13 @@
+package it.alicelazzeri.book_shelf_backend.repositories;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.enums.BookSortKey;
+
+import java.util.List;
+
+public interface BookKeysetRepository {
+
+    // Books following the (lastValue, lastId) position in the given order, optionally restricted to
+    // a user; lastValue and lastId are null for the first page
+    List<Book> findBooksAfter(Long userId, BookSortKey sortKey, boolean ascending, Object lastValue, Long lastId, int limit);
+}
@@ -0,0 +1,59 @@
+package it.alicelazzeri.book_shelf_backend.repositories;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.enums.BookSortKey;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Seek pagination: instead of skipping OFFSET rows, the query starts right after the last row of the
+// previous page using a row-value comparison on (sort column, id), which the composite indexes serve
+// directly. The catalog entries are fetched with the books, which are serialized after the transaction
+
+public class BookKeysetRepositoryImpl implements BookKeysetRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Book> findBooksAfter(Long userId, BookSortKey sortKey, boolean ascending, Object lastValue, Long lastId, int limit) {
+        String column = "b." + sortKey.getPath();
+        String operator = ascending ? ">" : "<";
+        String direction = ascending ? "asc" : "desc";
+
+        List<String> conditions = new ArrayList<>();
+        if (userId != null) {
+            conditions.add("b.user.id = :userId");
+        }
+        if (lastId != null) {
+            conditions.add(sortKey == BookSortKey.ID ?
+                    "b.id " + operator + " :lastId" :
+                    "(" + column + ", b.id) " + operator + " (:lastValue, :lastId)");
+        }
+
+        StringBuilder jpql = new StringBuilder("select b from Book b join fetch b.catalog");
+        if (!conditions.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", conditions));
+        }
+        jpql.append(" order by ");
+        if (sortKey != BookSortKey.ID) {
+            jpql.append(column).append(' ').append(direction).append(", ");
+        }
+        jpql.append("b.id ").append(direction);
+
+        TypedQuery<Book> query = entityManager.createQuery(jpql.toString(), Book.class);
+        if (userId != null) {
+            query.setParameter("userId", userId);
+        }
+        if (lastId != null) {
+            query.setParameter("lastId", lastId);
+            if (sortKey != BookSortKey.ID) {
+                query.setParameter("lastValue", lastValue);
+            }
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+}
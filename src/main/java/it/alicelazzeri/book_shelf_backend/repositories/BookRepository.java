@@ -2,13 +2,108 @@ package it.alicelazzeri.book_shelf_backend.repositories;
 
 import it.alicelazzeri.book_shelf_backend.entities.Book;
 import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BooksVersionDTO;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// Books returned to the web layer are serialized once their transaction is over (open-in-view is off):
+// the lookups serving them fetch the catalog entry with the book, see the @EntityGraph methods
+
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long>, PagingAndSortingRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, PagingAndSortingRepository<Book, Long>, BookKeysetRepository {
+    @Override
+    @EntityGraph(attributePaths = "catalog")
+    Optional<Book> findById(Long id);
+
+    @EntityGraph(attributePaths = "catalog")
     Page<Book> findByUserId(long userId, Pageable pageable);
+
+    long countByUserId(long userId);
+
+    // ISBN lookups, served by the unique (isbn_code, user_id) index on live books (see BookSchemaInitializer)
+    @EntityGraph(attributePaths = "catalog")
+    List<Book> findByCatalogIsbnCodeOrderByUserIdAsc(long isbnCode);
+
+    @EntityGraph(attributePaths = "catalog")
+    Optional<Book> findByUserIdAndCatalogIsbnCode(long userId, long isbnCode);
+
+    // locks the existing copy, so concurrent upserts of the same book are applied one after the other;
+    // the catalog entry is not fetched, a join would lock the entry shared with the other users too
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.user.id = :userId and b.catalog.isbnCode = :isbnCode")
+    Optional<Book> findForUpdateByUserIdAndIsbnCode(@Param("userId") long userId, @Param("isbnCode") long isbnCode);
+
+    @Query("select b.catalog.isbnCode from Book b where b.user.id = :userId and b.catalog.isbnCode in :isbnCodes")
+    List<Long> findIsbnCodesByUserId(@Param("userId") long userId, @Param("isbnCodes") Collection<Long> isbnCodes);
+
+    // atomic increment in a single statement, returns the new value and what the statistics need
+    // (empty when the book doesn't exist or is deleted); the version is bumped by hand since Hibernate
+    // doesn't see the update, the author is the book's own or the one of the catalog entry joined by the update
+    @Query(value = "UPDATE books b SET completed_readings = b.completed_readings + 1, version = b.version + 1 " +
+            "FROM catalog_books c WHERE b.id = :id AND b.deleting_date IS NULL AND c.isbn_code = b.isbn_code " +
+            "RETURNING b.completed_readings AS \"completedReadings\", b.user_id AS \"userId\", " +
+            "coalesce(b.book_author, c.book_author) AS \"bookAuthor\", to_char(b.adding_date, 'YYYY-MM') AS \"addingMonth\"",
+            nativeQuery = true)
+    Optional<ReadingsIncrement> incrementCompletedReadings(@Param("id") long id);
+
+    interface ReadingsIncrement {
+        int getCompletedReadings();
+
+        long getUserId();
+
+        String getBookAuthor();
+
+        String getAddingMonth();
+    }
+
+    // writes the cover column alone, so a cover finishing its upload never conflicts with concurrent
+    // changes to the rest of the book; returns the id, empty when the book doesn't exist or is deleted
+    @Query(value = "UPDATE books SET book_cover_url = :bookCoverUrl, version = version + 1 " +
+            "WHERE id = :id AND deleting_date IS NULL RETURNING id", nativeQuery = true)
+    Optional<Long> updateBookCoverUrl(@Param("id") long id, @Param("bookCoverUrl") String bookCoverUrl);
+
+    // paged listing of all books without the plot column
+    @Query(value = "select new it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO(" +
+            "b.id, b.user.id, b.bookTitle, coalesce(b.bookAuthor, c.bookAuthor), c.isbnCode, b.addingDate, b.completedReadings, " +
+            "coalesce(b.bookCoverUrl, c.bookCoverUrl)) from Book b join b.catalog c",
+            countQuery = "select count(b) from Book b")
+    Page<BookSummaryDTO> findAllSummaries(Pageable pageable);
+
+    // books of several users in a single query, without the plot column
+    @Query("select new it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO(" +
+            "b.id, b.user.id, b.bookTitle, coalesce(b.bookAuthor, c.bookAuthor), c.isbnCode, b.addingDate, b.completedReadings, " +
+            "coalesce(b.bookCoverUrl, c.bookCoverUrl)) from Book b join b.catalog c where b.user.id in :userIds order by b.id")
+    List<BookSummaryDTO> findSummariesByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    // Hard delete of a user's books before the user row itself. Native, since entity queries only see
+    // live books; split in two so that each statement can use a partial index. The ids of the removed
+    // books are returned, for the caller to evict exactly those from the cache
+
+    @Query(value = "DELETE FROM books WHERE user_id = :userId AND deleting_date IS NULL RETURNING id", nativeQuery = true)
+    List<Long> purgeLiveByUserId(@Param("userId") long userId);
+
+    @Query(value = "DELETE FROM books WHERE user_id = :userId AND deleting_date IS NOT NULL RETURNING id", nativeQuery = true)
+    List<Long> purgeDeletedByUserId(@Param("userId") long userId);
+
+    // version-only lookups backing the ETags, the book rows themselves are never loaded
+    @Query("select b.version from Book b where b.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    // an insert, update or delete of any of the user's books changes at least one of the three values
+    @Query("select new it.alicelazzeri.book_shelf_backend.payloads.entities.BooksVersionDTO(" +
+            "count(b), coalesce(sum(b.id), 0L), coalesce(sum(b.version), 0L)) from Book b where b.user.id = :userId")
+    BooksVersionDTO findVersionByUserId(@Param("userId") long userId);
 }
@@ -0,0 +1,19 @@
+package it.alicelazzeri.book_shelf_backend.repositories;
+
+import it.alicelazzeri.book_shelf_backend.entities.BookStats;
+import it.alicelazzeri.book_shelf_backend.entities.enums.StatsDimension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BookStatsRepository extends JpaRepository<BookStats, BookStats.Key> {
+
+    // rows emptied by deletions stay until the next reconciliation, they are skipped here
+    @Query("select s from BookStats s where s.userId = :userId and s.dimension = :dimension and s.books > 0")
+    List<BookStats> findNonEmpty(@Param("userId") long userId, @Param("dimension") StatsDimension dimension, Pageable pageable);
+}
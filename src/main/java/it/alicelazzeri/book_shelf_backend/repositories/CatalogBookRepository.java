@@ -0,0 +1,9 @@
+package it.alicelazzeri.book_shelf_backend.repositories;
+
+import it.alicelazzeri.book_shelf_backend.entities.CatalogBook;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CatalogBookRepository extends JpaRepository<CatalogBook, Long> {
+}
@@ -0,0 +1,29 @@
+package it.alicelazzeri.book_shelf_backend.repositories;
+
+import it.alicelazzeri.book_shelf_backend.entities.EmailOutboxMessage;
+import it.alicelazzeri.book_shelf_backend.entities.enums.EmailStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    // due messages locked with FOR UPDATE SKIP LOCKED (lock timeout -2), so several dispatchers
+    // never claim the same message
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select m from EmailOutboxMessage m where m.status = :status and m.nextAttemptAt <= :now order by m.nextAttemptAt")
+    List<EmailOutboxMessage> findDueForUpdate(@Param("status") EmailStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatus(EmailStatus status);
+}
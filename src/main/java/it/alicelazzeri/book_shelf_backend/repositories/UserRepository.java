@@ -2,8 +2,14 @@ package it.alicelazzeri.book_shelf_backend.repositories;
 
 import it.alicelazzeri.book_shelf_backend.entities.Book;
 import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.UserSummaryDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +19,19 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long>, PagingAndSortingRepository<User, Long> {
     public Optional<User> findByEmail (String email);
 
+    // the user with the books of its representation, for responses serialized after the transaction
+    @EntityGraph(attributePaths = {"books", "books.catalog"})
+    Optional<User> findWithBooksById(long id);
+
+    // projection of the users listing: only the user columns are selected, books are never loaded
+    @Query(value = "select new it.alicelazzeri.book_shelf_backend.payloads.entities.UserSummaryDTO(" +
+            "u.id, u.firstName, u.lastName, u.email, u.avatarUrl, u.role) from User u",
+            countQuery = "select count(u) from User u")
+    Page<UserSummaryDTO> findAllSummaries(Pageable pageable);
+
+    @Query("select u.id from User u order by u.id")
+    List<Long> findAllIds();
+
+    @Query("select u.version from User u where u.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
 }
@@ -1,12 +1,20 @@
 package it.alicelazzeri.book_shelf_backend.runners;
 
+import it.alicelazzeri.book_shelf_backend.entities.Book;
 import it.alicelazzeri.book_shelf_backend.entities.User;
 import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
 import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.validation.IsbnValidator;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import it.alicelazzeri.book_shelf_backend.repositories.UserRepository;
 import it.alicelazzeri.book_shelf_backend.services.BookService;
-import it.alicelazzeri.book_shelf_backend.services.UserService;
+import it.alicelazzeri.book_shelf_backend.services.CatalogService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
@@ -14,23 +22,43 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @Order(2)
+@ConditionalOnProperty(name = "bookshelf.seed.enabled", havingValue = "true", matchIfMissing = true)
 public class BooksRunner implements CommandLineRunner {
 
+    private static final long COPY_ISBN_STEP = 10_000_019L;
+
     @Autowired
     private BookService bookService;
 
     @Autowired
-    private UserService userService;
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private SeedExecutor seedExecutor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // maximum number of books per user; above the catalog size, numbered copies of catalog books are added
+    @Value("${bookshelf.seed.max-books-per-user:0}")
+    private int maxBooksPerUser;
 
     @Override
     public void run(String... args) throws Exception {
         Random random = new Random();
 
-        List<User> users = userService.getAllUsers();
-        if (users.isEmpty()) {
+        List<Long> userIds = userRepository.findAllIds();
+        if (userIds.isEmpty()) {
             throw new NotFoundException("No users were found in the DB.");
         }
 
@@ -71,7 +99,7 @@ public class BooksRunner implements CommandLineRunner {
         books.add(
                 new BookDTO("Harry Potter and the Goblet of Fire",
                         "J. K. Rowling",
-                        9780747551003L,
+                        9780747546245L,
                         generateRandomPastDate(random),
                         generateRandomFutureDate(random),
                         "Harry competes in the dangerous Triwizard Tournament and faces Voldemort's return.",
@@ -82,7 +110,7 @@ public class BooksRunner implements CommandLineRunner {
         books.add(
                 new BookDTO("Harry Potter and the Order of the Phoenix",
                         "J. K. Rowling",
-                        9780747551004L,
+                        9780747551003L,
                         generateRandomPastDate(random),
                         generateRandomFutureDate(random),
                         "Harry battles the Ministry of Magic and the dark forces of Voldemort in his fifth year.",
@@ -115,7 +143,7 @@ public class BooksRunner implements CommandLineRunner {
         books.add(
                 new BookDTO("Quidditch Through the Ages",
                         "J. K. Rowling",
-                        9780747551002L,
+                        9780747554721L,
                         generateRandomPastDate(random),
                         generateRandomFutureDate(random),
                         "A comprehensive guide to Quidditch, the favorite sport of the wizarding world.",
@@ -137,7 +165,7 @@ public class BooksRunner implements CommandLineRunner {
         books.add(
                 new BookDTO("Fantastic Beasts and Where to Find Them",
                         "J. K. Rowling",
-                        9780747591056L,
+                        9780747554714L,
                         generateRandomPastDate(random),
                         generateRandomFutureDate(random),
                         "An A-Z guide to magical creatures in the wizarding world.",
@@ -346,13 +374,28 @@ public class BooksRunner implements CommandLineRunner {
                 "https://res.cloudinary.com/dopblayrc/image/upload/v1722926792/book%20covers/game%20of%20thrones/z1dsbawbjdy7fliq8zv5.jpg"
         ));
 
-        for (User user : users) {
-            int numBooks = random.nextInt(books.size()) + 1;
-            List<BookDTO> userBooks = getRandomSubsetOfBooks(books, numBooks, random);
-            for (BookDTO book : userBooks) {
-                bookService.saveBook(book, user.getId());
+        int maxBooks = maxBooksPerUser > 0 ? maxBooksPerUser : books.size();
+        int usersPerChunk = Math.max(1, seedExecutor.getChunkSize() / Math.max(1, maxBooks / 2));
+        int chunks = (userIds.size() + usersPerChunk - 1) / usersPerChunk;
+
+        seedExecutor.saveInParallel("Books", chunks, chunk -> {
+            Random chunkRandom = ThreadLocalRandom.current();
+            List<Book> chunkBooks = new ArrayList<>();
+            int from = chunk * usersPerChunk;
+            int to = Math.min(from + usersPerChunk, userIds.size());
+            for (Long userId : userIds.subList(from, to)) {
+                User user = entityManager.getReference(User.class, userId);
+                int numBooks = chunkRandom.nextInt(maxBooks) + 1;
+                for (BookDTO bookDTO : getRandomSubsetOfBooks(books, numBooks, chunkRandom)) {
+                    Book book = bookService.mapToEntity(bookDTO);
+                    book.setUser(user);
+                    chunkBooks.add(book);
+                }
             }
-        }
+            // the users of a chunk share the catalog entries of their titles
+            catalogService.attach(chunkBooks);
+            return chunkBooks;
+        }, bookRepository);
 
         System.out.println("Books have been successfully added to the DB.");
     }
@@ -372,9 +415,32 @@ public class BooksRunner implements CommandLineRunner {
     private List<BookDTO> getRandomSubsetOfBooks(List<BookDTO> books, int numBooks, Random random) {
         List<BookDTO> copy = new ArrayList<>(books);
         List<BookDTO> subset = new ArrayList<>();
-        for (int i = 0; i < numBooks; i++) {
+        for (int i = 0; i < Math.min(numBooks, books.size()); i++) {
             subset.add(copy.remove(random.nextInt(copy.size())));
         }
+        // numbered copies with their own ISBN when more books than the catalog are requested
+        for (int i = books.size(); i < numBooks; i++) {
+            BookDTO book = books.get(i % books.size());
+            int copyNumber = i / books.size();
+            subset.add(new BookDTO(
+                    book.bookTitle() + " (copy " + copyNumber + ")",
+                    book.bookAuthor(),
+                    copyIsbn(book.isbnCode(), copyNumber),
+                    book.addingDate(),
+                    book.deletingDate(),
+                    book.bookPlot(),
+                    book.completedReadings(),
+                    book.bookCoverUrl()
+            ));
+        }
         return subset;
     }
+
+    // valid ISBN-13 of a numbered copy: the 9 digits after the 978/979 prefix are shifted by a step coprime
+    // with 10, so copy numbers map to distinct codes, and the check digit is computed again
+    private static long copyIsbn(long isbnCode, int copyNumber) {
+        long prefix = isbnCode / 10_000_000_000L;
+        long body = (isbnCode / 10 % 1_000_000_000L + copyNumber * COPY_ISBN_STEP) % 1_000_000_000L;
+        return IsbnValidator.withCheckDigit(prefix * 1_000_000_000L + body);
+    }
 }
@@ -0,0 +1,75 @@
+package it.alicelazzeri.book_shelf_backend.runners;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+// Parallel seeding: entities are built and saved in chunks by a pool of workers, every chunk in its
+// own transaction so Hibernate can batch the inserts and the persistence context stays small
+
+@Component
+public class SeedExecutor {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${bookshelf.seed.threads:4}")
+    private int threads;
+
+    @Value("${bookshelf.seed.chunk-size:1000}")
+    private int chunkSize;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    // chunkFactory builds the entities of the given chunk index; returns the number of saved rows
+    public <T> long saveInParallel(String label, int chunks, IntFunction<List<T>> chunkFactory, JpaRepository<T, Long> repository) throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicLong savedRows = new AtomicLong();
+        long start = System.nanoTime();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int chunkIndex = chunk;
+                futures.add(executor.submit(() -> {
+                    List<T> entities = chunkFactory.apply(chunkIndex);
+                    transactionTemplate.executeWithoutResult(status -> {
+                        repository.saveAll(entities);
+                        entityManager.flush();
+                        entityManager.clear();
+                    });
+                    savedRows.addAndGet(entities.size());
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = Math.max((System.nanoTime() - start) / 1_000_000_000.0, 0.001);
+        System.out.printf("%s: %d rows seeded in %.1f s (%.0f rows/sec) with %d workers.%n",
+                label, savedRows.get(), seconds, savedRows.get() / seconds, threads);
+        return savedRows.get();
+    }
+}
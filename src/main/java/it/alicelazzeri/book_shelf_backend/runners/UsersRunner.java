@@ -1,63 +1,82 @@
 package it.alicelazzeri.book_shelf_backend.runners;
 
 import com.github.javafaker.Faker;
+import it.alicelazzeri.book_shelf_backend.entities.User;
 import it.alicelazzeri.book_shelf_backend.entities.enums.Role;
-import it.alicelazzeri.book_shelf_backend.payloads.auth.UserRegisterRequestDTO;
-import it.alicelazzeri.book_shelf_backend.services.UserService;
+import it.alicelazzeri.book_shelf_backend.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 @Order(1)
+@ConditionalOnProperty(name = "bookshelf.seed.enabled", havingValue = "true", matchIfMissing = true)
 public class UsersRunner implements CommandLineRunner {
 
     @Autowired
-    private UserService userService;
+    private UserRepository userRepository;
 
     @Autowired
     private PasswordEncoder bcrypt;
 
-    private Faker faker = new Faker();
+    @Autowired
+    private SeedExecutor seedExecutor;
+
+    @Value("${bookshelf.seed.users:10}")
+    private int usersCount;
+
+    @Value("${bookshelf.seed.password:BookShelf-seed-password}")
+    private String seedPassword;
+
+    // Faker is not thread-safe, every seeding worker gets its own instance
+    private final ThreadLocal<Faker> faker = ThreadLocal.withInitial(Faker::new);
 
     @Override
     public void run(String... args) throws Exception {
         createUsers();
     }
 
-    private void createUsers() {
-        for (int i = 0; i < 10; i++) {
-            String firstName = generateValidFirstName();
-            String lastName = generateValidLastName();
-            String email = faker.internet().emailAddress();
-            String password = bcrypt.encode(faker.internet().password());
-            String avatarUrl = generateAvatarUrl(firstName, lastName);
-
-            UserRegisterRequestDTO userDto = new UserRegisterRequestDTO(
-                    firstName,
-                    lastName,
-                    email,
-                    password,
-                    Role.USER,
-                    avatarUrl
-            );
-
-            try {
-                userService.saveUser(userDto);
-            } catch (Exception e){
-                System.out.println("Error while saving user with email : " + email + ". " + e.getMessage());
+    private void createUsers() throws Exception {
+        // hashing is deliberately slow: all seeded users share one precomputed hash
+        String passwordHash = bcrypt.encode(seedPassword);
+        int chunkSize = seedExecutor.getChunkSize();
+        int chunks = (usersCount + chunkSize - 1) / chunkSize;
+
+        seedExecutor.saveInParallel("Users", chunks, chunk -> {
+            int from = chunk * chunkSize;
+            int to = Math.min(from + chunkSize, usersCount);
+            List<User> users = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                users.add(createUser(i, passwordHash));
             }
-        }
+            return users;
+        }, userRepository);
 
         System.out.println("Users have been successfully added to the DB.");
     }
 
+    private User createUser(int index, String passwordHash) {
+        String firstName = generateValidFirstName();
+        String lastName = generateValidLastName();
+        // the index keeps emails unique however many users are generated
+        String email = (firstName + "." + lastName).toLowerCase().replaceAll("[^a-z.]", "") + "." + index + "@bookshelf.dev";
+
+        User user = new User(firstName, lastName, email, passwordHash, generateAvatarUrl(firstName, lastName));
+        user.setRole(Role.USER);
+        return user;
+    }
+
     private String generateValidFirstName() {
         String firstName;
         do {
-            firstName = faker.name().firstName();
+            firstName = faker.get().name().firstName();
         } while (
                 firstName.length() < 3 || firstName.length() > 30
         );
@@ -67,7 +86,7 @@ public class UsersRunner implements CommandLineRunner {
     private String generateValidLastName() {
         String lastName;
         do {
-            lastName = faker.name().lastName();
+            lastName = faker.get().name().lastName();
         } while (
                 lastName.length() < 3 || lastName.length() > 30
         );
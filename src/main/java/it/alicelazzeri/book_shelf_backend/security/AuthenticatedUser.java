@@ -0,0 +1,12 @@
+package it.alicelazzeri.book_shelf_backend.security;
+
+import it.alicelazzeri.book_shelf_backend.entities.enums.Role;
+
+// Principal of a token-authenticated request, built from the token claims without loading the User
+
+public record AuthenticatedUser(
+        long id,
+        String email,
+        Role role
+) {
+}
@@ -0,0 +1,63 @@
+package it.alicelazzeri.book_shelf_backend.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// Picks the highest BCrypt cost whose hashing time stays within a target latency on the current
+// hardware. Used at startup when bookshelf.password.bcrypt.strength=0, or standalone:
+// java -cp <classpath> it.alicelazzeri.book_shelf_backend.security.BCryptCostCalibrator 250
+
+public final class BCryptCostCalibrator {
+
+    public static final int MIN_COST = 10;
+    public static final int MAX_COST = 16;
+    private static final int SAMPLES = 3;
+    private static final String SAMPLE_PASSWORD = "BookShelf-calibration";
+
+    private BCryptCostCalibrator() {
+    }
+
+    public static int calibrate(Duration target) {
+        int chosen = MIN_COST;
+        for (int cost = MIN_COST; cost <= MAX_COST; cost++) {
+            Duration time = measure(cost);
+            if (time.compareTo(target) > 0) {
+                break;
+            }
+            chosen = cost;
+            // every step doubles the time, don't measure a cost that can't fit
+            if (time.multipliedBy(2).compareTo(target) > 0) {
+                break;
+            }
+        }
+        return chosen;
+    }
+
+    // median hashing time of the given cost
+    public static Duration measure(int cost) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(cost);
+        encoder.encode(SAMPLE_PASSWORD);
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return Duration.ofNanos(samples[SAMPLES / 2]);
+    }
+
+    public static void main(String[] args) {
+        Duration target = Duration.ofMillis(args.length > 0 ? Long.parseLong(args[0]) : 250);
+        for (int cost = MIN_COST; cost <= MAX_COST; cost++) {
+            Duration time = measure(cost);
+            System.out.printf("cost %d: %d ms%n", cost, time.toMillis());
+            if (time.compareTo(target.multipliedBy(2)) > 0) {
+                break;
+            }
+        }
+        System.out.println("Suggested bookshelf.password.bcrypt.strength=" + calibrate(target) + " for a " + target.toMillis() + " ms target");
+    }
+}
@@ -0,0 +1,118 @@
+package it.alicelazzeri.book_shelf_backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import it.alicelazzeri.book_shelf_backend.entities.enums.Role;
+import it.alicelazzeri.book_shelf_backend.exceptions.UnauthorizedException;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Authenticates requests carrying "Authorization: Bearer <token>". The principal is built from the
+// token claims, so valid tokens never touch the database; verified tokens are kept in a short-TTL
+// cache (never beyond their expiration) so repeated requests skip signature check and JSON parsing.
+// Requests without a token go through unauthenticated, authorization is decided by SecurityConfig.
+
+@Component
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @Autowired
+    private JwtTools jwtTools;
+
+    // errors are rendered by ExceptionsHandler like the ones thrown by controllers
+    @Autowired
+    @Qualifier("handlerExceptionResolver")
+    private HandlerExceptionResolver handlerExceptionResolver;
+
+    @Value("${bookshelf.security.token-cache.ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    @Value("${bookshelf.security.token-cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    private Cache<String, CachedAuthentication> authentications;
+
+    @PostConstruct
+    public void init() {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(cacheTtlSeconds);
+        authentications = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, CachedAuthentication>() {
+                    @Override
+                    public long expireAfterCreate(String token, CachedAuthentication cached, long currentTime) {
+                        long untilExpiration = TimeUnit.MILLISECONDS.toNanos(cached.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(ttlNanos, untilExpiration));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, CachedAuthentication cached, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, CachedAuthentication cached, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            try {
+                UsernamePasswordAuthenticationToken authentication = authenticate(header.substring(BEARER_PREFIX.length()).trim());
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            } catch (UnauthorizedException e) {
+                handlerExceptionResolver.resolveException(request, response, null, e);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    public UsernamePasswordAuthenticationToken authenticate(String token) {
+        CachedAuthentication cached = authentications.getIfPresent(token);
+        if (cached == null || cached.expiresAtMillis() <= System.currentTimeMillis()) {
+            cached = verify(token);
+            authentications.put(token, cached);
+        }
+        // the token is mutable (details, credentials erasure): a fresh one per request, sharing the cached principal
+        return UsernamePasswordAuthenticationToken.authenticated(cached.principal(), null, cached.authorities());
+    }
+
+    private CachedAuthentication verify(String token) {
+        Claims claims = jwtTools.verifyToken(token);
+        Role role = Role.valueOf(claims.get(JwtTools.ROLE_CLAIM, String.class));
+        AuthenticatedUser principal = new AuthenticatedUser(
+                Long.parseLong(claims.getSubject()), claims.get(JwtTools.EMAIL_CLAIM, String.class), role);
+        return new CachedAuthentication(principal, List.of(new SimpleGrantedAuthority(role.name())),
+                claims.getExpiration().getTime());
+    }
+
+    private record CachedAuthentication(AuthenticatedUser principal, List<GrantedAuthority> authorities, long expiresAtMillis) {
+    }
+}
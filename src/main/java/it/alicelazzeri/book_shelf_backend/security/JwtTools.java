@@ -0,0 +1,62 @@
+package it.alicelazzeri.book_shelf_backend.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.exceptions.UnauthorizedException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+// Issues and verifies access tokens. The signing key and the parser are built once: both are
+// immutable and thread-safe, so verification doesn't rebuild them on every request.
+// Tokens carry id, email and role of the user, which is all the filter needs to authenticate a request.
+
+@Component
+public class JwtTools {
+
+    public static final String EMAIL_CLAIM = "email";
+    public static final String ROLE_CLAIM = "role";
+
+    @Value("${spring.application.jwt.secret}")
+    private String secret;
+
+    @Value("${spring.application.jwt.expirationMs}")
+    private long expirationMs;
+
+    private SecretKey key;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(key).build();
+    }
+
+    public String createToken(User user) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .subject(String.valueOf(user.getId()))
+                .claim(EMAIL_CLAIM, user.getEmail())
+                .claim(ROLE_CLAIM, user.getRole().name())
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expirationMs))
+                .signWith(key)
+                .compact();
+    }
+
+    public Claims verifyToken(String token) {
+        try {
+            return parser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new UnauthorizedException("Invalid or expired token.");
+        }
+    }
+}
@@ -1,45 +1,74 @@
 package it.alicelazzeri.book_shelf_backend.security;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
+
     // Security Filter Chain configuration
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity,
+                                            JwtAuthenticationFilter jwtAuthenticationFilter,
+                                            @Value("${bookshelf.security.require-authentication:false}") boolean requireAuthentication) throws Exception {
         httpSecurity.formLogin(http -> http.disable());
         httpSecurity.csrf(c -> c.disable())
-                .authorizeHttpRequests(authorize -> authorize
-                        .requestMatchers("/api/**").permitAll()
-                        .requestMatchers(HttpMethod.POST, "/auth/**").permitAll()
-                        .requestMatchers("/v3/api-docs/**").permitAll()
-                        .requestMatchers("/swagger-ui/**").permitAll()
-                        .requestMatchers("/swagger-ui.html").permitAll()
-                        .anyRequest().permitAll())
+                .authorizeHttpRequests(authorize -> {
+                    authorize
+                            .requestMatchers(HttpMethod.POST, "/auth/**").permitAll()
+                            .requestMatchers("/v3/api-docs/**").permitAll()
+                            .requestMatchers("/swagger-ui/**").permitAll()
+                            .requestMatchers("/swagger-ui.html").permitAll();
+                    if (requireAuthentication) {
+                        authorize.requestMatchers("/api/**").authenticated();
+                    } else {
+                        authorize.requestMatchers("/api/**").permitAll();
+                    }
+                    authorize.anyRequest().permitAll();
+                })
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                .exceptionHandling(e -> e.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()));
         return httpSecurity.build();
     }
 
+    // The JWT filter is a bean so it can be injected, but it must only run inside the security chain
+
+    @Bean
+    FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration(JwtAuthenticationFilter jwtAuthenticationFilter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(jwtAuthenticationFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     // CORS configuration
 
     @Bean
@@ -56,9 +85,19 @@ public class SecurityConfig {
 
     // Password Encoder configuration
 
+    // Hashes are stored as {bcrypt}$2a$NN$..., legacy hashes without the prefix are still matched as
+    // BCrypt; upgradeEncoding() flags hashes with another cost (or no prefix) so they are rehashed on
+    // login. Strength 0 picks the cost closest to the target latency on this machine.
+
     @Bean
-    PasswordEncoder getBCrypt() {
-        return new BCryptPasswordEncoder(11);
+    PasswordEncoder getBCrypt(@Value("${bookshelf.password.bcrypt.strength:11}") int strength,
+                              @Value("${bookshelf.password.bcrypt.target-ms:250}") long targetMs) {
+        int cost = strength > 0 ? strength : BCryptCostCalibrator.calibrate(Duration.ofMillis(targetMs));
+        logger.info("Using BCrypt cost {}", cost);
+        StrengthAwareBCryptPasswordEncoder bcrypt = new StrengthAwareBCryptPasswordEncoder(cost);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
     }
 
     // Java Mail Sender configuration
@@ -0,0 +1,39 @@
+package it.alicelazzeri.book_shelf_backend.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+// BCrypt encoder whose upgradeEncoding() also reports hashes stronger than the configured cost,
+// so lowering the work factor takes effect on the next login just like raising it does
+
+public class StrengthAwareBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final int strength;
+
+    public StrengthAwareBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int cost = costOf(encodedPassword);
+        return cost < 0 || cost != strength;
+    }
+
+    // cost of a "$2a$NN$..." hash, -1 when the hash is not BCrypt
+    public static int costOf(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$'
+                || encodedPassword.charAt(3) != '$' || encodedPassword.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
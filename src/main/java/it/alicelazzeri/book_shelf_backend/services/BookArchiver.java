@@ -0,0 +1,113 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.alicelazzeri.book_shelf_backend.repositories.ArchivedBookRepository;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Archival tier of the books table: soft-deleted books older than the retention period are moved to
+// books_archive in batches, each batch a single DELETE ... RETURNING feeding an INSERT, so the hot
+// table and its (partial, live rows only, see BookSchemaInitializer) indexes stay as small as the
+// live libraries
+
+@Service
+public class BookArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookArchiver.class);
+
+    // rows locked with SKIP LOCKED, so concurrent archivers (several instances) never move the same book
+    private static final String ARCHIVE_BATCH = "WITH moved AS (" +
+            "DELETE FROM books WHERE id IN (" +
+            "SELECT id FROM books WHERE deleting_date < ? ORDER BY deleting_date, id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, user_id, isbn_code, book_title, book_author, book_plot, book_cover_url, completed_readings, adding_date, deleting_date) " +
+            "INSERT INTO books_archive (id, user_id, isbn_code, book_title, book_author, book_plot, book_cover_url, completed_readings, " +
+            "adding_date, deleting_date, archived_at) " +
+            "SELECT id, user_id, isbn_code, book_title, book_author, book_plot, book_cover_url, completed_readings, " +
+            "adding_date, deleting_date, now() FROM moved";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ArchivedBookRepository archivedBookRepository;
+
+    @Autowired
+    private BookCacheEvictor bookCacheEvictor;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookshelf.books.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bookshelf.books.archive.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${bookshelf.books.archive.batch-size:1000}")
+    private int batchSize;
+
+    private Counter archivedCounter;
+
+    @PostConstruct
+    public void init() {
+        archivedCounter = Counter.builder("bookshelf.books.archived")
+                .description("Deleted books moved to the archive table")
+                .register(meterRegistry);
+    }
+
+    // Runs batches (each in its own transaction, outside of any request) until no book is due;
+    // returns the number of archived books
+
+    @Scheduled(fixedDelayString = "${bookshelf.books.archive.interval-ms:3600000}",
+            initialDelayString = "${bookshelf.books.archive.initial-delay-ms:60000}")
+    public long archive() {
+        if (!enabled) {
+            return 0;
+        }
+        Date cutoff = Date.valueOf(LocalDate.now().minusDays(retentionDays));
+        long archived = 0;
+        int moved;
+        do {
+            moved = jdbcTemplate.update(ARCHIVE_BATCH, cutoff, batchSize);
+            archived += moved;
+            archivedCounter.increment(moved);
+        } while (moved == batchSize);
+        if (archived > 0) {
+            logger.info("{} books deleted before {} moved to the archive", archived, cutoff);
+        }
+        return archived;
+    }
+
+    // Removes every book of the user (live, soft-deleted and archived) ahead of the user's deletion
+
+    @Transactional
+    public void purgeUserBooks(long userId) {
+        List<Long> purgedIds = new ArrayList<>(bookRepository.purgeLiveByUserId(userId));
+        purgedIds.addAll(bookRepository.purgeDeletedByUserId(userId));
+        archivedBookRepository.deleteByUserId(userId);
+        // the statements bypass Hibernate, drop the cached copies of the user's books once they commit
+        bookCacheEvictor.evict(purgedIds);
+        eventPublisher.publishEvent(new BooksChangedEvent(purgedIds));
+    }
+}
@@ -0,0 +1,48 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+// Drops books written by native/JDBC updates from the second-level cache. Inside a transaction the
+// eviction is repeated after commit: a reader loading the book between the update and the commit
+// would otherwise put the old row back in the cache for good
+
+@Component
+public class BookCacheEvictor {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public void evict(long bookId) {
+        evict(List.of(bookId));
+    }
+
+    public void evict(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(bookIds);
+        evictNow(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(ids);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Collection<Long> bookIds) {
+        for (Long bookId : bookIds) {
+            entityManagerFactory.getCache().evict(Book.class, bookId);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.imports.BulkImportErrorDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.imports.BulkImportResultDTO;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Bulk import of books from a JSON array, NDJSON or CSV (with header) stream. Rows are read one at a
+// time, validated, and inserted in chunks, each chunk in its own transaction with JDBC batching, so
+// neither the request body nor the persistence context grow with the size of the import
+
+@Service
+public class BookImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BookStatsService bookStatsService;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${bookshelf.import.chunk-size:1000}")
+    private int chunkSize;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    public BulkImportResultDTO importBooks(long userId, InputStream input, MediaType contentType) throws IOException {
+        userService.getUserById(userId).orElseThrow(
+                () -> new NotFoundException("User with id: " + userId + " not found."));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        List<BulkImportErrorDTO> errors = new ArrayList<>();
+        List<Book> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkRows = new ArrayList<>(chunkSize);
+        long totalRows = 0;
+        long importedRows = 0;
+        long failedRows = 0;
+
+        try (MappingIterator<JsonNode> rows = openRows(input, contentType)) {
+            while (true) {
+                JsonNode row;
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                    row = rows.nextValue();
+                    totalRows++;
+                } catch (StreamReadException e) {
+                    // malformed input: the rest of the stream cannot be read reliably
+                    failedRows++;
+                    addError(errors, totalRows + 1, "Malformed input, import stopped: " + e.getOriginalMessage());
+                    break;
+                }
+
+                // rows are parsed as trees first, so a row with wrong values doesn't break the stream
+                String error = null;
+                try {
+                    BookDTO bookDTO = objectMapper.treeToValue(row, BookDTO.class);
+                    Set<ConstraintViolation<BookDTO>> violations = validator.validate(bookDTO);
+                    if (violations.isEmpty()) {
+                        chunk.add(bookService.mapToEntity(bookDTO));
+                        chunkRows.add(totalRows);
+                    } else {
+                        error = violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.joining(", "));
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    error = "Invalid book: " + e.getMessage();
+                }
+                if (error != null) {
+                    failedRows++;
+                    addError(errors, totalRows, error);
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    long saved = saveChunk(transactionTemplate, userId, chunk, chunkRows, errors);
+                    importedRows += saved;
+                    failedRows += chunk.size() - saved;
+                    chunk.clear();
+                    chunkRows.clear();
+                }
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            long saved = saveChunk(transactionTemplate, userId, chunk, chunkRows, errors);
+            importedRows += saved;
+            failedRows += chunk.size() - saved;
+        }
+        return new BulkImportResultDTO(totalRows, importedRows, failedRows, errors);
+    }
+
+    private MappingIterator<JsonNode> openRows(InputStream input, MediaType contentType) throws IOException {
+        if (contentType != null && TEXT_CSV.includes(contentType)) {
+            CsvSchema schema = CsvSchema.emptySchema().withHeader();
+            return csvMapper.readerFor(JsonNode.class).with(schema).readValues(input);
+        }
+        // a JSON array is iterated element by element, NDJSON value by value
+        return objectMapper.readerFor(JsonNode.class).readValues(input);
+    }
+
+    private long saveChunk(TransactionTemplate transactionTemplate, long userId, List<Book> chunk,
+                           List<Long> chunkRows, List<BulkImportErrorDTO> errors) {
+        // books already on the user's shelf, or repeated within the chunk, are reported and skipped
+        // instead of failing the whole chunk on the unique (isbn_code, user_id) index
+        List<Book> books = new ArrayList<>(chunk.size());
+        List<BulkImportErrorDTO> duplicates = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<Long> isbnCodes = new HashSet<>(bookRepository.findIsbnCodesByUserId(userId,
+                        chunk.stream().map(Book::getIsbnCode).collect(Collectors.toSet())));
+                User user = entityManager.getReference(User.class, userId);
+                for (int i = 0; i < chunk.size(); i++) {
+                    Book book = chunk.get(i);
+                    if (!isbnCodes.add(book.getIsbnCode())) {
+                        duplicates.add(new BulkImportErrorDTO(chunkRows.get(i), "Duplicate book, ISBN " + book.getIsbnCode() + " is already on the user's shelf"));
+                        continue;
+                    }
+                    book.setUser(user);
+                    books.add(book);
+                }
+                catalogService.attach(books);
+                bookRepository.saveAll(books);
+                books.forEach(bookStatsService::bookAdded);
+                entityManager.flush();
+                eventPublisher.publishEvent(new BooksChangedEvent(books.stream().map(Book::getId).toList()));
+                entityManager.clear();
+            });
+        } catch (RuntimeException e) {
+            for (Long row : chunkRows) {
+                addError(errors, row, "Not imported, chunk failed: " + e.getMessage());
+            }
+            return 0;
+        }
+        duplicates.forEach(duplicate -> addError(errors, duplicate.row(), duplicate.message()));
+        return books.size();
+    }
+
+    private void addError(List<BulkImportErrorDTO> errors, long row, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new BulkImportErrorDTO(row, message));
+        }
+    }
+}
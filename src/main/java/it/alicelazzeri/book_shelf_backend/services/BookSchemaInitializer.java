@@ -0,0 +1,75 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Schema objects of the books table that JPA annotations cannot express, created at startup once
+// Hibernate has built or updated the tables. Independent of the features using them (keyset pages,
+// archiving, unique ISBNs), so disabling one of those never changes the schema
+
+@Component
+@DependsOn("entityManagerFactory")
+public class BookSchemaInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookSchemaInitializer.class);
+
+    // Indexes over live rows only: every entity query carries "deleting_date is null" (see Book), so
+    // deleted rows never need to be indexed for them. Deleted rows get their own small indexes for
+    // the archiver and for the purge of a deleted user's books. A user keeps one live copy of an ISBN,
+    // the unique index leads with isbn_code so it also serves lookups of an ISBN across users
+    private static final List<String> INDEXES = List.of(
+            "CREATE UNIQUE INDEX IF NOT EXISTS uq_books_isbn_code_user_id ON books (isbn_code, user_id) WHERE deleting_date IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_books_user_id_id ON books (user_id, id) WHERE deleting_date IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_books_adding_date_id ON books (adding_date, id) WHERE deleting_date IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_books_user_id_adding_date_id ON books (user_id, adding_date, id) WHERE deleting_date IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_books_book_title_id ON books (book_title, id) WHERE deleting_date IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_books_user_id_book_title_id ON books (user_id, book_title, id) WHERE deleting_date IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_books_deleted_deleting_date_id ON books (deleting_date, id) WHERE deleting_date IS NOT NULL",
+            "CREATE INDEX IF NOT EXISTS idx_books_deleted_user_id ON books (user_id) WHERE deleting_date IS NOT NULL");
+
+    // A database from before the unique index may hold several live copies of an ISBN for a user: the
+    // oldest copy is kept with the readings of all of them, the others are soft-deleted (and archived
+    // later). The statistics rollups are corrected by the reconciliation at startup
+    private static final String UNIQUE_ISBN_INDEX = "SELECT count(*) FROM pg_indexes " +
+            "WHERE schemaname = current_schema() AND indexname = 'uq_books_isbn_code_user_id'";
+    private static final String DUPLICATES = "SELECT isbn_code, user_id, min(id) AS kept_id, sum(completed_readings) AS readings " +
+            "FROM books WHERE deleting_date IS NULL GROUP BY isbn_code, user_id HAVING count(*) > 1";
+    private static final String MERGE_DUPLICATE_READINGS = "UPDATE books b SET completed_readings = d.readings, version = b.version + 1 " +
+            "FROM (" + DUPLICATES + ") d WHERE b.id = d.kept_id";
+    private static final String DELETE_DUPLICATES = "UPDATE books b SET deleting_date = current_date, version = b.version + 1 " +
+            "FROM (" + DUPLICATES + ") d " +
+            "WHERE b.isbn_code = d.isbn_code AND b.user_id = d.user_id AND b.deleting_date IS NULL AND b.id <> d.kept_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void createIndexes() {
+        if (jdbcTemplate.queryForObject(UNIQUE_ISBN_INDEX, Long.class) == 0) {
+            resolveDuplicateIsbns();
+        }
+        INDEXES.forEach(jdbcTemplate::execute);
+    }
+
+    private void resolveDuplicateIsbns() {
+        Integer deleted = new TransactionTemplate(transactionManager).execute(status -> {
+            jdbcTemplate.update(MERGE_DUPLICATE_READINGS);
+            return jdbcTemplate.update(DELETE_DUPLICATES);
+        });
+        if (deleted != null && deleted > 0) {
+            logger.info("{} duplicate copies of ISBNs on the same shelf merged into the oldest copy and deleted", deleted);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Full-text search over title, author and plot. The Postgres implementation is backed by a generated
+// tsvector column, the in-memory one is meant for tests and databases without full-text support
+// (bookshelf.search.mode=memory), kept up to date from the BooksChangedEvent of the committed writes
+
+public interface BookSearchIndex {
+
+    // Books matching every term of the query (terms match as prefixes), best ranked first;
+    // userId restricts the search to a user's books when not null
+    List<BookSummaryDTO> search(String query, Long userId, int limit);
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -1,31 +1,57 @@
 package it.alicelazzeri.book_shelf_backend.services;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.itextpdf.text.*;
-import com.itextpdf.text.pdf.BaseFont;
 import com.itextpdf.text.pdf.PdfWriter;
 import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.CatalogBook;
 import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.entities.enums.BookSortKey;
+import it.alicelazzeri.book_shelf_backend.entities.enums.DuplicateBookMode;
 import it.alicelazzeri.book_shelf_backend.exceptions.BadRequestException;
+import it.alicelazzeri.book_shelf_backend.exceptions.ConflictException;
 import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
+import it.alicelazzeri.book_shelf_backend.exceptions.PreconditionFailedException;
 import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.CompletedReadingsDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.CursorPageDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.PageDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.validation.IsbnValidator;
 import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
 import java.time.LocalDate;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 
 @Service
 public class BookService {
 
+    private static final int MAX_SCROLL_SIZE = 100;
+
+    private static final Set<String> SUMMARY_FIELDS = Arrays.stream(BookSummaryDTO.class.getRecordComponents())
+            .map(RecordComponent::getName)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+
     @Autowired
     private BookRepository bookRepository;
 
@@ -33,11 +59,93 @@ public class BookService {
     private UserService userService;
 
     @Autowired
-    private Cloudinary cloudinary;
+    private PdfResourceRegistry pdfResourceRegistry;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CompletedReadingsBuffer completedReadingsBuffer;
+
+    @Autowired
+    private BookStatsService bookStatsService;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private BookCacheEvictor bookCacheEvictor;
+
+    @Value("${bookshelf.readings.buffered:false}")
+    private boolean bufferedReadings;
+
+    @Value("${bookshelf.pdf.page-size:500}")
+    private int pdfPageSize;
+
+    // compact listing: summaries (no plot) selected by a projection query, in a slim page envelope
+    @Transactional(readOnly = true)
+    public PageDTO<BookSummaryDTO> getBookSummaries(Pageable pageable) {
+        return PageDTO.of(bookRepository.findAllSummaries(pageable));
+    }
+
+    // Properties selected with ?fields=, validated against the summary; the id is always included
+    public Set<String> parseSummaryFields(String fields) {
+        Set<String> selected = new LinkedHashSet<>();
+        selected.add("id");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!SUMMARY_FIELDS.contains(name)) {
+                throw new BadRequestException("Unknown book field: " + name + ", allowed fields are " + SUMMARY_FIELDS + ".");
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    // Keyset pagination over all books (userId null) or a user's books: the page starts after the
+    // position encoded in the "after" cursor, so deep pages cost the same as the first one and no
+    // count query is issued
 
     @Transactional(readOnly = true)
-    public Page<Book> getAllBooks(Pageable pageable) {
-        return bookRepository.findAll(pageable);
+    public CursorPageDTO<Book> scrollBooks(Long userId, String sort, String direction, String after, int size) {
+        BookSortKey sortKey = BookSortKey.fromProperty(sort);
+        boolean ascending = !"desc".equalsIgnoreCase(direction);
+        int limit = Math.max(1, Math.min(size, MAX_SCROLL_SIZE));
+
+        Object lastValue = null;
+        Long lastId = null;
+        if (after != null && !after.isBlank()) {
+            String[] cursor = decodeCursor(after);
+            if (!cursor[0].equals(sortKey.name()) || Boolean.parseBoolean(cursor[1]) != ascending) {
+                throw new BadRequestException("Cursor does not match the requested sort.");
+            }
+            try {
+                lastId = Long.parseLong(cursor[2]);
+                lastValue = sortKey.parseValue(cursor[3]);
+            } catch (IllegalArgumentException | DateTimeException e) {
+                throw new BadRequestException("Invalid cursor: " + after);
+            }
+        }
+
+        // one extra row tells whether a next page exists
+        List<Book> books = bookRepository.findBooksAfter(userId, sortKey, ascending, lastValue, lastId, limit + 1);
+        boolean hasNext = books.size() > limit;
+        List<Book> content = hasNext ? books.subList(0, limit) : books;
+        String nextCursor = hasNext ? encodeCursor(sortKey, ascending, content.get(content.size() - 1)) : null;
+        return new CursorPageDTO<>(content, content.size(), hasNext, nextCursor);
+    }
+
+    public List<BookSummaryDTO> searchBooks(String query, Long userId, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Search query cannot be empty.");
+        }
+        return bookSearchIndex.search(query, userId, Math.max(1, Math.min(limit, MAX_SCROLL_SIZE)));
     }
 
     @Transactional(readOnly = true)
@@ -46,144 +154,298 @@ public class BookService {
                 () -> new NotFoundException("Book with id: " + id + " not found."));
     }
 
+    @Transactional(readOnly = true)
+    public Page<Book> getBooksByUserId(long userId, Pageable pageable) {
+        return bookRepository.findByUserId(userId, pageable);
+    }
+
+    // live books with the given ISBN (ISBN-10 or 13), of one user or of all users
+    @Transactional(readOnly = true)
+    public List<Book> getBooksByIsbn(long isbnCode, Long userId) {
+        long isbn13 = IsbnValidator.toIsbn13(isbnCode);
+        if (userId != null) {
+            return bookRepository.findByUserIdAndCatalogIsbnCode(userId, isbn13).map(List::of).orElse(List.of());
+        }
+        return bookRepository.findByCatalogIsbnCodeOrderByUserIdAsc(isbn13);
+    }
+
     @Transactional
     public Book saveBook(BookDTO bookPayload, long userId) {
+        return saveBook(bookPayload, userId, DuplicateBookMode.REJECT).book();
+    }
+
+    public record SaveResult(Book book, boolean created) {
+    }
+
+    // A user keeps a single live book per ISBN (unique index, see BookSchemaInitializer): when the book is
+    // already on the shelf it is rejected, incremented or merged according to the mode. The existing
+    // copy is locked, so concurrent upserts don't lose updates; two concurrent first inserts of the
+    // same ISBN are left to the unique index, the loser gets a 409 and can retry
+
+    @Transactional
+    public SaveResult saveBook(BookDTO bookPayload, long userId, DuplicateBookMode mode) {
         User user = userService.getUserById(userId).orElseThrow(
                 () -> new NotFoundException("User with id: " + userId + " not found."));
         Book book = mapToEntity(bookPayload);
+        Optional<Book> existing = mode == DuplicateBookMode.REJECT ?
+                bookRepository.findByUserIdAndCatalogIsbnCode(userId, book.getIsbnCode()) :
+                bookRepository.findForUpdateByUserIdAndIsbnCode(userId, book.getIsbnCode());
+        if (existing.isPresent()) {
+            Book existingBook = existing.get();
+            if (mode == DuplicateBookMode.REJECT) {
+                throw new ConflictException("User with id: " + userId + " already has the book with ISBN " + book.getIsbnCode() +
+                        " (id: " + existingBook.getId() + ").");
+            }
+            BookStatsService.Contribution before = BookStatsService.contributionOf(existingBook);
+            if (mode == DuplicateBookMode.INCREMENT) {
+                existingBook.setCompletedReadings(existingBook.getCompletedReadings() + bookPayload.completedReadings());
+            } else {
+                applyUpdate(existingBook, bookPayload);
+            }
+            Book savedBook = bookRepository.save(existingBook);
+            bookStatsService.bookChanged(before, savedBook);
+            eventPublisher.publishEvent(BooksChangedEvent.of(savedBook.getId()));
+            return new SaveResult(savedBook, false);
+        }
+        catalogService.attach(List.of(book));
         book.setUser(user);
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        bookStatsService.bookAdded(savedBook);
+        eventPublisher.publishEvent(BooksChangedEvent.of(savedBook.getId()));
+        return new SaveResult(savedBook, true);
     }
 
     @Transactional
     public Book updateBook(long id, BookDTO updatedBook) {
+        return updateBook(id, updatedBook, null);
+    }
+
+    // Conditional update (If-Match): expectedVersions lists the versions the client accepts, null means
+    // unconditional. A concurrent update committed between the check and the flush fails the @Version
+    // check of the UPDATE statement and is reported the same way
+
+    @Transactional
+    public Book updateBook(long id, BookDTO updatedBook, Collection<Long> expectedVersions) {
         Book bookToBeUpdated = this.getBookById(id);
-        updateBookFromDTO(bookToBeUpdated, updatedBook);
-        return bookRepository.save(bookToBeUpdated);
+        if (expectedVersions != null && !expectedVersions.contains(bookToBeUpdated.getVersion())) {
+            throw new PreconditionFailedException("Book with id: " + id + " has been modified, current version is " + bookToBeUpdated.getVersion() + ".");
+        }
+        long isbnCode = IsbnValidator.toIsbn13(updatedBook.isbnCode());
+        if (isbnCode != bookToBeUpdated.getIsbnCode()) {
+            bookRepository.findByUserIdAndCatalogIsbnCode(bookToBeUpdated.getUser().getId(), isbnCode).ifPresent(other -> {
+                throw new ConflictException("The user already has the book with ISBN " + isbnCode + " (id: " + other.getId() + ").");
+            });
+        }
+        BookStatsService.Contribution before = BookStatsService.contributionOf(bookToBeUpdated);
+        applyUpdate(bookToBeUpdated, updatedBook);
+        Book savedBook;
+        if (expectedVersions == null) {
+            savedBook = bookRepository.save(bookToBeUpdated);
+        } else {
+            try {
+                savedBook = bookRepository.saveAndFlush(bookToBeUpdated);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                throw new PreconditionFailedException("Book with id: " + id + " has been modified concurrently.");
+            }
+        }
+        bookStatsService.bookChanged(before, savedBook);
+        eventPublisher.publishEvent(BooksChangedEvent.of(savedBook.getId()));
+        return savedBook;
     }
 
+    // soft delete: a single UPDATE stamping deletingDate (see Book), the row is archived later
     @Transactional
     public void deleteBook(long id) {
         Book book = this.getBookById(id);
-        book.setDeletingDate(LocalDate.now());
-        bookRepository.save(book);
-        bookRepository.deleteById(id);
+        bookRepository.delete(book);
+        bookStatsService.bookRemoved(book);
+        eventPublisher.publishEvent(BooksChangedEvent.of(id));
     }
 
+    // cover files are processed and uploaded by the CoverUploadService, only the URL is written here,
+    // by a targeted update: the upload may finish while the book is being edited or read
+
     @Transactional
-    public Book updateBookCover(long id, MultipartFile bookCoverFile) throws IOException {
-        Book bookToBeUpdated = this.getBookById(id);
-        if (bookCoverFile != null && !bookCoverFile.isEmpty()) {
-            Map<?, ?> uploadResult = cloudinary.uploader().upload(bookCoverFile.getBytes(), ObjectUtils.emptyMap());
-            String imageUrl = (String) uploadResult.get("url");
-            bookToBeUpdated.setBookCoverUrl(imageUrl);
-        } else {
-            throw new BadRequestException("Book cover file is empty or null.");
-        }
-        return bookRepository.save(bookToBeUpdated);
+    public void updateBookCoverUrl(long id, String bookCoverUrl) {
+        bookRepository.updateBookCoverUrl(id, bookCoverUrl).orElseThrow(
+                () -> new NotFoundException("Book with id: " + id + " not found."));
+        // the native update bypasses Hibernate, drop the cached copy of the book once it commits
+        bookCacheEvictor.evict(id);
+        eventPublisher.publishEvent(BooksChangedEvent.of(id));
     }
 
+    // Atomic mode: a single UPDATE ... RETURNING, so concurrent increments are never lost.
+    // Buffered mode: the increment is accumulated in memory and written by the periodic batched flush.
+
     @Transactional
-    public Book incrementCompletedReadings(long id) {
-        Book book = this.getBookById(id);
-        book.setCompletedReadings(book.getCompletedReadings() + 1);
-        return bookRepository.save(book);
+    public CompletedReadingsDTO incrementCompletedReadings(long id) {
+        if (bufferedReadings) {
+            if (!bookRepository.existsById(id)) {
+                throw new NotFoundException("Book with id: " + id + " not found.");
+            }
+            completedReadingsBuffer.increment(id);
+            return new CompletedReadingsDTO(id, null, completedReadingsBuffer.getPendingCount(id));
+        }
+        BookRepository.ReadingsIncrement increment = bookRepository.incrementCompletedReadings(id).orElseThrow(
+                () -> new NotFoundException("Book with id: " + id + " not found."));
+        // the native update bypasses Hibernate, drop the cached copy of the book once it commits
+        bookCacheEvictor.evict(id);
+        eventPublisher.publishEvent(BooksChangedEvent.of(id));
+        bookStatsService.readingsAdded(increment.getUserId(), increment.getBookAuthor(), increment.getAddingMonth(), 1);
+        return new CompletedReadingsDTO(id, increment.getCompletedReadings(), 0);
     }
 
-    @Transactional(readOnly = true)
-    public ByteArrayOutputStream generateBooksPDF(User user) throws DocumentException, IOException {
+    // Streaming PDF export: the document is written straight to the given output stream and books are
+    // fetched one slice at a time, so memory per export does not grow with the size of the library
+
+    public void writeBooksPDF(User user, OutputStream output) throws DocumentException, IOException {
+        writeBooksPDF(user, output, booksWritten -> {
+        });
+    }
+
+    // progressListener receives the number of books written so far after each slice. Books are read by
+    // seeking past the last id written (see BookKeysetRepositoryImpl), so every slice is an index range
+    // scan and books added or deleted during the export never shift the following slices
+
+    public void writeBooksPDF(User user, OutputStream output, LongConsumer progressListener) throws DocumentException, IOException {
         Document document = new Document();
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, output);
-        document.open();
-
-        // Color configuration
-        BaseColor black = new BaseColor(0, 0, 0);
-        BaseColor bookColor = new BaseColor(212, 98, 64);
-        BaseColor shelfColor = new BaseColor(21, 43, 60);
-        BaseColor userColor = new BaseColor(212, 98, 64);
-
-        // Font configuration
-        BaseFont crimsonText = BaseFont.createFont("src/main/resources/fonts/CrimsonText/CrimsonText-Regular.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-        Font crimsonTextFont = new Font(crimsonText, 12, Font.NORMAL, black);
-        Font bookTitleFont = new Font(crimsonText, 12, Font.BOLDITALIC, black);
-
-        BaseFont workSans = BaseFont.createFont("src/main/resources/fonts/WorkSans/WorkSans-Regular.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-        Font workSansFont = new Font(workSans, 13, Font.NORMAL, black);
-        Font userFont = new Font(workSans, 13, Font.BOLD, userColor);
-
-        // Add logo with text
-        Image logo = Image.getInstance("src/main/resources/static/images/logo.png");
-        logo.scaleToFit(80, 80);
-        logo.setAlignment(Element.ALIGN_CENTER);
-        document.add(logo);
-
-        Paragraph header = new Paragraph();
-        header.add(new Chunk("Book", new Font(workSans, 20, Font.BOLD, bookColor)));
-        header.add(new Chunk("Shelf", new Font(workSans, 20, Font.BOLD, shelfColor)));
-        header.setAlignment(Element.ALIGN_CENTER);
-        header.setSpacingAfter(20);
-        document.add(header);
-
-        // User information
-        Paragraph userInfo = new Paragraph();
-        userInfo.add(new Chunk("Books list of ", workSansFont));
-        userInfo.add(new Chunk(user.getFirstName() + " " + user.getLastName(), userFont));
-        userInfo.setAlignment(Element.ALIGN_CENTER);
-        userInfo.setSpacingAfter(20);
-        document.add(userInfo);
-
-        // Books List
-        for (Book book : user.getBooks()) {
-            Paragraph bookInfo = new Paragraph();
-            bookInfo.add(new Chunk("• " + book.getBookTitle(), bookTitleFont));
-            bookInfo.add(new Chunk(" by " + book.getBookAuthor(), crimsonTextFont));
-            bookInfo.add(new Chunk("\n" + book.getBookPlot(), crimsonTextFont));
-            bookInfo.setAlignment(Element.ALIGN_LEFT);
-            bookInfo.setSpacingAfter(15);
-            document.add(bookInfo);
+        PdfWriter writer = PdfWriter.getInstance(document, output);
+        writer.setCloseStream(false);
+        try {
+            document.open();
+
+            // Fonts and logo are preloaded once by the registry
+            PdfResourceRegistry.PdfFonts fonts = pdfResourceRegistry.getFonts();
+
+            // Add logo with text
+            document.add(pdfResourceRegistry.getLogo());
+
+            Paragraph header = new Paragraph();
+            header.add(new Chunk("Book", fonts.bookHeaderFont()));
+            header.add(new Chunk("Shelf", fonts.shelfHeaderFont()));
+            header.setAlignment(Element.ALIGN_CENTER);
+            header.setSpacingAfter(20);
+            document.add(header);
+
+            // User information
+            Paragraph userInfo = new Paragraph();
+            userInfo.add(new Chunk("Books list of ", fonts.workSansFont()));
+            userInfo.add(new Chunk(user.getFirstName() + " " + user.getLastName(), fonts.userFont()));
+            userInfo.setAlignment(Element.ALIGN_CENTER);
+            userInfo.setSpacingAfter(20);
+            document.add(userInfo);
+
+            // Books List (fetched slice by slice instead of initializing user.getBooks()); there is no
+            // transaction around the export, each slice is read and detached by its own query
+            List<Book> slice;
+            Long lastId = null;
+            long booksWritten = 0;
+            do {
+                slice = bookRepository.findBooksAfter(user.getId(), BookSortKey.ID, true, null, lastId, pdfPageSize);
+                for (Book book : slice) {
+                    Paragraph bookInfo = new Paragraph();
+                    bookInfo.add(new Chunk("• " + book.getBookTitle(), fonts.bookTitleFont()));
+                    bookInfo.add(new Chunk(" by " + book.getBookAuthor(), fonts.crimsonTextFont()));
+                    bookInfo.add(new Chunk("\n" + book.getBookPlot(), fonts.crimsonTextFont()));
+                    bookInfo.setAlignment(Element.ALIGN_LEFT);
+                    bookInfo.setSpacingAfter(15);
+                    document.add(bookInfo);
+                    lastId = book.getId();
+                }
+                booksWritten += slice.size();
+                writer.flush();
+                progressListener.accept(booksWritten);
+            } while (slice.size() == pdfPageSize);
+
+            document.close();
+        } catch (Exception e) {
+            // release the writer also on failure; the output stream is left to the caller (setCloseStream(false))
+            if (document.isOpen()) {
+                try {
+                    document.close();
+                } catch (RuntimeException closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
+            throw e;
         }
+        output.flush();
+    }
 
-        document.close();
-        return output;
+
+    // Opaque cursor: sort key, direction, id and sort value of the last book of a page
+
+    private String encodeCursor(BookSortKey sortKey, boolean ascending, Book lastBook) {
+        String cursor = sortKey.name() + ":" + ascending + ":" + lastBook.getId() + ":" + sortKey.extractValue(lastBook);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
     }
 
-    public ByteArrayOutputStream generateUserBooksPDF(Long userId) throws DocumentException, IOException {
-        User user = userService.getUserById(userId).orElseThrow(() -> new NotFoundException("User not found"));
-        return generateBooksPDF(user);
+    private String[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 4);
+            if (parts.length == 4) {
+                return parts;
+            }
+        } catch (IllegalArgumentException e) {
+            // falls through to the bad request below
+        }
+        throw new BadRequestException("Invalid cursor: " + cursor);
     }
 
+    // Writes the payload to the book, switching catalog entry when the ISBN changes. The catalog entry
+    // is shared by the copies of other users and is left as it is: the book keeps its own description
+
+    private void applyUpdate(Book book, BookDTO bookDTO) {
+        long isbnCode = IsbnValidator.toIsbn13(bookDTO.isbnCode());
+        if (isbnCode != book.getIsbnCode()) {
+            book.setCatalog(catalogService.getOrCreate(mapToCatalogBook(bookDTO)));
+        }
+        updateBookFromDTO(book, bookDTO);
+    }
 
     // Map BookDTO to Book entity (converts BookDTO to a Book entity instance in order to save or
     // update data on db via BookRepository)
 
-    private Book mapToEntity(BookDTO bookDTO) {
+    public Book mapToEntity(BookDTO bookDTO) {
+        // deletingDate is owned by deleteBook, a value sent by clients is ignored. The catalog entry
+        // is transient, CatalogService.attach replaces it with the shared entry of the ISBN
         LocalDate addingDate = bookDTO.addingDate() != null ? bookDTO.addingDate() : LocalDate.now();
-        LocalDate deletingDate = bookDTO.deletingDate();
-        String bookCoverUrl = bookDTO.bookCoverUrl() != null ? bookDTO.bookCoverUrl() : "/images/unavailable.png";
 
         return Book.builder()
+                .withCatalog(mapToCatalogBook(bookDTO))
                 .withBookTitle(bookDTO.bookTitle())
-                .withBookAuthor(bookDTO.bookAuthor())
-                .withIsbnCode(bookDTO.isbnCode())
                 .withAddingDate(addingDate)
-                .withDeletingDate(deletingDate)
-                .withBookPlot(bookDTO.bookPlot())
                 .withCompletedReadings(bookDTO.completedReadings())
+                .withBookCoverUrl(bookDTO.bookCoverUrl())
+                .build();
+    }
+
+    // ISBN-10 codes are stored as ISBN-13. Payloads of the API are validated (@Isbn) before they get
+    // here, the check also covers the books built by the seeding runner
+    CatalogBook mapToCatalogBook(BookDTO bookDTO) {
+        if (!IsbnValidator.isValidIsbn(bookDTO.isbnCode())) {
+            throw new BadRequestException("Invalid ISBN: " + bookDTO.isbnCode() + ".");
+        }
+        String bookCoverUrl = bookDTO.bookCoverUrl() != null ? bookDTO.bookCoverUrl() : "/images/unavailable.png";
+
+        return CatalogBook.builder()
+                .withIsbnCode(IsbnValidator.toIsbn13(bookDTO.isbnCode()))
+                .withBookTitle(bookDTO.bookTitle())
+                .withBookAuthor(bookDTO.bookAuthor())
+                .withBookPlot(bookDTO.bookPlot())
                 .withBookCoverUrl(bookCoverUrl)
                 .build();
     }
 
     // update already existing book from BookDTO
 
-    private void updateBookFromDTO(Book existingBook, BookDTO bookDTO) {
-        existingBook.setBookTitle(bookDTO.bookTitle());
-        existingBook.setBookAuthor(bookDTO.bookAuthor());
-        existingBook.setIsbnCode(bookDTO.isbnCode());
+    void updateBookFromDTO(Book existingBook, BookDTO bookDTO) {
+        CatalogBook catalogBook = existingBook.getCatalog();
+        existingBook.describe(bookDTO.bookTitle(), bookDTO.bookAuthor(), bookDTO.bookPlot());
         existingBook.setAddingDate(bookDTO.addingDate() != null ? bookDTO.addingDate() : existingBook.getAddingDate());
-        existingBook.setDeletingDate(bookDTO.deletingDate());
-        existingBook.setBookCoverUrl(bookDTO.bookCoverUrl() != null ? bookDTO.bookCoverUrl() : existingBook.getBookCoverUrl());
-        existingBook.setBookPlot(bookDTO.bookPlot());
+        if (bookDTO.bookCoverUrl() != null) {
+            existingBook.setBookCoverUrl(bookDTO.bookCoverUrl().equals(catalogBook.getBookCoverUrl()) ? null : bookDTO.bookCoverUrl());
+        }
         existingBook.setCompletedReadings(bookDTO.completedReadings());
     }
 }
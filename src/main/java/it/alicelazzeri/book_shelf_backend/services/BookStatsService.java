@@ -0,0 +1,385 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.BookStats;
+import it.alicelazzeri.book_shelf_backend.entities.enums.StatsDimension;
+import it.alicelazzeri.book_shelf_backend.payloads.stats.AuthorStatsDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.stats.BookStatsDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.stats.MonthlyAdditionsDTO;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import it.alicelazzeri.book_shelf_backend.repositories.BookStatsRepository;
+import it.alicelazzeri.book_shelf_backend.repositories.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Reading statistics served from the book_stats rollup table. Book changes are turned into deltas of
+// the user's rows, accumulated per transaction and applied just before commit with one batched upsert,
+// so a request writes each rollup row once whatever the number of books it touches. Rows are always
+// locked in the same order (by user, TOTAL first), which keeps concurrent writers free of deadlocks and
+// lets the reconciliation serialize with the writers of a user through the TOTAL row. Requests never
+// write the global rows (user 0), every write would queue on them: they are folded from the user rows
+// periodically, so the library statistics lag behind by at most the fold interval.
+
+@Service
+public class BookStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookStatsService.class);
+
+    private static final String UPSERT_DELTA = "INSERT INTO book_stats (user_id, dimension, stat_key, books, readings) " +
+            "VALUES (?, ?, ?, ?, ?) ON CONFLICT (user_id, dimension, stat_key) DO UPDATE " +
+            "SET books = book_stats.books + excluded.books, readings = book_stats.readings + excluded.readings";
+
+    private static final String LOCK_USER_TOTALS = "SELECT user_id FROM book_stats " +
+            "WHERE user_id BETWEEN ? AND ? AND dimension = 'TOTAL' ORDER BY user_id FOR UPDATE";
+    private static final String CREATE_USER_TOTALS = "INSERT INTO book_stats (user_id, dimension, stat_key, books, readings) " +
+            "SELECT id, 'TOTAL', '', 0, 0 FROM users WHERE id BETWEEN ? AND ? ON CONFLICT DO NOTHING";
+    private static final String EXPECTED_USER_ROWS =
+            "SELECT user_id, 'TOTAL' AS dimension, '' AS stat_key, count(*) AS books, sum(completed_readings) AS readings " +
+            "FROM books WHERE user_id BETWEEN ? AND ? AND deleting_date IS NULL GROUP BY user_id " +
+            "UNION ALL SELECT b.user_id, 'AUTHOR', coalesce(b.book_author, c.book_author), count(*), sum(b.completed_readings) " +
+            "FROM books b JOIN catalog_books c ON c.isbn_code = b.isbn_code " +
+            "WHERE b.user_id BETWEEN ? AND ? AND b.deleting_date IS NULL GROUP BY b.user_id, coalesce(b.book_author, c.book_author) " +
+            "UNION ALL SELECT user_id, 'MONTH', to_char(adding_date, 'YYYY-MM'), count(*), sum(completed_readings) " +
+            "FROM books WHERE user_id BETWEEN ? AND ? AND deleting_date IS NULL GROUP BY user_id, to_char(adding_date, 'YYYY-MM')";
+    private static final String ACTUAL_USER_ROWS = "SELECT user_id, dimension, stat_key, books, readings FROM book_stats " +
+            "WHERE user_id BETWEEN ? AND ?";
+
+    // one fold at a time across instances, the global rows are only written by the fold
+    private static final String LOCK_GLOBAL_FOLD = "SELECT pg_advisory_xact_lock(hashtext('book_stats_global_fold'))";
+    private static final String EXPECTED_GLOBAL_ROWS = "SELECT 0 AS user_id, dimension, stat_key, sum(books) AS books, sum(readings) AS readings " +
+            "FROM book_stats WHERE user_id <> 0 GROUP BY dimension, stat_key";
+    private static final String ACTUAL_GLOBAL_ROWS = "SELECT user_id, dimension, stat_key, books, readings FROM book_stats WHERE user_id = 0";
+    private static final String DELETE_EMPTY_ROWS = "DELETE FROM book_stats WHERE user_id BETWEEN ? AND ? " +
+            "AND dimension <> 'TOTAL' AND books = 0 AND readings = 0";
+
+    private static final String DELETE_USER_ROWS = "DELETE FROM book_stats WHERE user_id = ?";
+
+    // rollup rows sorted in lock order: users by id, then dimension (TOTAL first) and key
+    private static final Comparator<BookStats.Key> LOCK_ORDER = Comparator
+            .comparingLong(BookStats.Key::getUserId)
+            .thenComparing(BookStats.Key::getDimension)
+            .thenComparing(BookStats.Key::getStatKey);
+
+    @Autowired
+    private BookStatsRepository bookStatsRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookshelf.stats.reconcile.threads:2}")
+    private int reconcileThreads;
+
+    @Value("${bookshelf.stats.reconcile.chunk-size:500}")
+    private int reconcileChunkSize;
+
+    private ThreadPoolTaskExecutor reconcileExecutor;
+    private TransactionTemplate transactionTemplate;
+    private Timer reconcileTimer;
+    private Counter driftCounter;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        reconcileExecutor = new ThreadPoolTaskExecutor();
+        reconcileExecutor.setCorePoolSize(reconcileThreads);
+        reconcileExecutor.setMaxPoolSize(reconcileThreads);
+        reconcileExecutor.setThreadNamePrefix("stats-reconcile-");
+        reconcileExecutor.initialize();
+        reconcileTimer = Timer.builder("bookshelf.stats.reconcile")
+                .description("Time spent rebuilding the statistics rollups")
+                .register(meterRegistry);
+        driftCounter = Counter.builder("bookshelf.stats.drift")
+                .description("Rollup rows found out of sync with the books by the reconciliation")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconcileExecutor.shutdown();
+    }
+
+    // Contribution of a book to the rollups, captured before a change to compute its delta
+    public record Contribution(long userId, String author, String month, long readings) {
+    }
+
+    public static Contribution contributionOf(Book book) {
+        return new Contribution(book.getUser().getId(), book.getBookAuthor(), monthOf(book.getAddingDate()), book.getCompletedReadings());
+    }
+
+    public static String monthOf(LocalDate date) {
+        return YearMonth.from(date).toString();
+    }
+
+    // incremental maintenance, to be called inside the transaction that changes the books
+
+    public void bookAdded(Book book) {
+        record(contributionOf(book), 1);
+    }
+
+    public void bookRemoved(Book book) {
+        record(contributionOf(book), -1);
+    }
+
+    public void bookChanged(Contribution before, Book after) {
+        Contribution current = contributionOf(after);
+        if (!current.equals(before)) {
+            record(before, -1);
+            record(current, 1);
+        }
+    }
+
+    public void readingsAdded(long userId, String author, String month, long readings) {
+        addDelta(userId, StatsDimension.TOTAL, "", 0, readings);
+        addDelta(userId, StatsDimension.AUTHOR, author, 0, readings);
+        addDelta(userId, StatsDimension.MONTH, month, 0, readings);
+    }
+
+    // Buffered readings are written by the CompletedReadingsBuffer outside of any request: the
+    // books are looked up once per flush and the deltas applied in one transaction
+    @Transactional
+    public void readingsFlushed(Map<Long, Long> readingsByBook) {
+        for (Book book : bookRepository.findAllById(readingsByBook.keySet())) {
+            readingsAdded(book.getUser().getId(), book.getBookAuthor(), monthOf(book.getAddingDate()), readingsByBook.get(book.getId()));
+        }
+    }
+
+    // The user's rows are dropped, the next fold takes them out of the global rows; called before the
+    // user's books are purged
+    @Transactional
+    public void userRemoved(long userId) {
+        jdbcTemplate.update(DELETE_USER_ROWS, userId);
+    }
+
+    private void record(Contribution contribution, int sign) {
+        long books = sign;
+        long readings = sign * contribution.readings();
+        addDelta(contribution.userId(), StatsDimension.TOTAL, "", books, readings);
+        addDelta(contribution.userId(), StatsDimension.AUTHOR, contribution.author(), books, readings);
+        addDelta(contribution.userId(), StatsDimension.MONTH, contribution.month(), books, readings);
+    }
+
+    private void addDelta(long userId, StatsDimension dimension, String statKey, long books, long readings) {
+        Map<BookStats.Key, long[]> deltas = transactionDeltas();
+        long[] delta = deltas.computeIfAbsent(new BookStats.Key(userId, dimension, statKey), key -> new long[2]);
+        delta[0] += books;
+        delta[1] += readings;
+    }
+
+    // deltas of the current transaction, applied by a synchronization right before it commits
+    @SuppressWarnings("unchecked")
+    private Map<BookStats.Key, long[]> transactionDeltas() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Statistics deltas must be recorded inside a transaction");
+        }
+        Map<BookStats.Key, long[]> deltas = (Map<BookStats.Key, long[]>) TransactionSynchronizationManager.getResource(this);
+        if (deltas == null) {
+            Map<BookStats.Key, long[]> newDeltas = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, newDeltas);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    applyDeltas(newDeltas);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BookStatsService.this);
+                }
+            });
+            deltas = newDeltas;
+        }
+        return deltas;
+    }
+
+    private void applyDeltas(Map<BookStats.Key, long[]> deltas) {
+        List<Object[]> upserts = new ArrayList<>(deltas.size());
+        deltas.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(LOCK_ORDER))
+                // zero deltas are kept for the TOTAL rows only: they serialize with the reconciliation
+                .filter(entry -> entry.getValue()[0] != 0 || entry.getValue()[1] != 0
+                        || entry.getKey().getDimension() == StatsDimension.TOTAL)
+                .forEach(entry -> upserts.add(new Object[]{entry.getKey().getUserId(), entry.getKey().getDimension().name(),
+                        entry.getKey().getStatKey(), entry.getValue()[0], entry.getValue()[1]}));
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_DELTA, upserts);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public BookStatsDTO getStats(long userId, int topAuthors, int months) {
+        BookStats total = bookStatsRepository.findById(new BookStats.Key(userId, StatsDimension.TOTAL, "")).orElse(null);
+        List<AuthorStatsDTO> authors = bookStatsRepository.findNonEmpty(userId, StatsDimension.AUTHOR,
+                        PageRequest.of(0, Math.max(1, topAuthors), Sort.by(Sort.Order.desc("books"), Sort.Order.desc("readings"), Sort.Order.asc("statKey"))))
+                .stream()
+                .map(row -> new AuthorStatsDTO(row.getStatKey(), row.getBooks(), row.getReadings()))
+                .toList();
+        List<MonthlyAdditionsDTO> additions = bookStatsRepository.findNonEmpty(userId, StatsDimension.MONTH,
+                        PageRequest.of(0, Math.max(1, months), Sort.by(Sort.Order.desc("statKey"))))
+                .stream()
+                .map(row -> new MonthlyAdditionsDTO(row.getStatKey(), row.getBooks()))
+                .toList();
+        return new BookStatsDTO(total != null ? total.getBooks() : 0, total != null ? total.getReadings() : 0, authors, additions);
+    }
+
+    public record ReconciliationResult(int chunks, long userRowsDrifted, long durationMs) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        // seeded books bypass the services, the rollups are built once they are in
+        reconcile();
+    }
+
+    // Rebuilds the rollups from the books: users are split in id ranges reconciled in parallel, each
+    // range in its own transaction holding the TOTAL rows of its users, then the global rows are
+    // folded again. Only drifted rows are written, again as deltas
+
+    @Scheduled(fixedDelayString = "${bookshelf.stats.reconcile.interval-ms:21600000}",
+            initialDelayString = "${bookshelf.stats.reconcile.interval-ms:21600000}")
+    public synchronized ReconciliationResult reconcile() {
+        long start = System.nanoTime();
+        List<Long> userIds = userRepository.findAllIds();
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int from = 0; from < userIds.size(); from += reconcileChunkSize) {
+            long firstId = userIds.get(from);
+            long lastId = userIds.get(Math.min(from + reconcileChunkSize, userIds.size()) - 1);
+            futures.add(reconcileExecutor.submit(() -> transactionTemplate.execute(status -> reconcileUsers(firstId, lastId))));
+        }
+
+        long userRowsDrifted = 0;
+        for (Future<Long> future : futures) {
+            try {
+                userRowsDrifted += future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Statistics reconciliation interrupted", e);
+            } catch (Exception e) {
+                logger.error("Error while reconciling a chunk of the statistics rollups", e);
+            }
+        }
+        foldGlobal();
+
+        long durationNanos = System.nanoTime() - start;
+        reconcileTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        driftCounter.increment(userRowsDrifted);
+        ReconciliationResult result = new ReconciliationResult(futures.size(), userRowsDrifted, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        if (userRowsDrifted > 0) {
+            logger.warn("Statistics rollups drifted: {} user rows corrected ({} chunks, {} ms)",
+                    userRowsDrifted, result.chunks(), result.durationMs());
+        } else {
+            logger.info("Statistics rollups in sync ({} chunks, {} ms)", result.chunks(), result.durationMs());
+        }
+        return result;
+    }
+
+    private long reconcileUsers(long firstId, long lastId) {
+        jdbcTemplate.update(CREATE_USER_TOTALS, firstId, lastId);
+        jdbcTemplate.queryForList(LOCK_USER_TOTALS, Long.class, firstId, lastId);
+        Map<BookStats.Key, long[]> expected = readRows(EXPECTED_USER_ROWS, firstId, lastId, firstId, lastId, firstId, lastId);
+        Map<BookStats.Key, long[]> actual = readRows(ACTUAL_USER_ROWS, firstId, lastId);
+        long drifted = correct(expected, actual);
+        jdbcTemplate.update(DELETE_EMPTY_ROWS, firstId, lastId);
+        return drifted;
+    }
+
+    // Global rows = sum of the user rows, in a short transaction of its own outside of any request;
+    // returns the number of global rows that changed since the previous fold
+
+    @Scheduled(fixedDelayString = "${bookshelf.stats.global.fold-interval-ms:60000}",
+            initialDelayString = "${bookshelf.stats.global.fold-interval-ms:60000}")
+    public long foldGlobal() {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject(LOCK_GLOBAL_FOLD, Object.class);
+            Map<BookStats.Key, long[]> expected = readRows(EXPECTED_GLOBAL_ROWS);
+            Map<BookStats.Key, long[]> actual = readRows(ACTUAL_GLOBAL_ROWS);
+            long changed = correct(expected, actual);
+            jdbcTemplate.update(DELETE_EMPTY_ROWS, BookStats.GLOBAL_USER_ID, BookStats.GLOBAL_USER_ID);
+            return changed;
+        });
+    }
+
+    // applies expected - actual to every row that differs, returns the number of such rows
+    private long correct(Map<BookStats.Key, long[]> expected, Map<BookStats.Key, long[]> actual) {
+        Set<BookStats.Key> keys = new HashSet<>(expected.keySet());
+        keys.addAll(actual.keySet());
+        Map<BookStats.Key, long[]> corrections = new TreeMap<>(LOCK_ORDER);
+        for (BookStats.Key key : keys) {
+            long[] expectedRow = expected.getOrDefault(key, new long[2]);
+            long[] actualRow = actual.getOrDefault(key, new long[2]);
+            if (expectedRow[0] != actualRow[0] || expectedRow[1] != actualRow[1]) {
+                corrections.put(key, new long[]{expectedRow[0] - actualRow[0], expectedRow[1] - actualRow[1]});
+            }
+        }
+        List<Object[]> upserts = new ArrayList<>(corrections.size());
+        corrections.forEach((key, delta) -> upserts.add(new Object[]{key.getUserId(), key.getDimension().name(), key.getStatKey(), delta[0], delta[1]}));
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_DELTA, upserts);
+        }
+        return corrections.size();
+    }
+
+    private Map<BookStats.Key, long[]> readRows(String query, Object... args) {
+        Map<BookStats.Key, long[]> rows = new HashMap<>();
+        for (BookStats row : jdbcTemplate.query(query, BookStatsService::mapRow, args)) {
+            rows.put(new BookStats.Key(row.getUserId(), row.getDimension(), row.getStatKey()), new long[]{row.getBooks(), row.getReadings()});
+        }
+        return rows;
+    }
+
+    private static BookStats mapRow(ResultSet resultSet, int rowNumber) throws SQLException {
+        BookStats row = new BookStats();
+        row.setUserId(resultSet.getLong("user_id"));
+        row.setDimension(StatsDimension.valueOf(resultSet.getString("dimension")));
+        row.setStatKey(resultSet.getString("stat_key"));
+        row.setBooks(resultSet.getLong("books"));
+        row.setReadings(resultSet.getLong("readings"));
+        return row;
+    }
+}
@@ -0,0 +1,14 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import java.util.Collection;
+import java.util.List;
+
+// Published by every write to the books (inserts, updates, deletions, counters and covers written by
+// native statements); listeners needing the committed state handle it after commit, see InMemoryBookSearchIndex
+
+public record BooksChangedEvent(Collection<Long> bookIds) {
+
+    public static BooksChangedEvent of(long bookId) {
+        return new BooksChangedEvent(List.of(bookId));
+    }
+}
@@ -0,0 +1,113 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+// Migration of a database from before the catalog, where every books (and books_archive) row carried
+// its own title, author, plot and cover, all mandatory. Runs at startup while the legacy plot column is
+// still NOT NULL (the schema updated in place with spring.jpa.hibernate.ddl-auto=update): the
+// descriptions are copied to catalog_books in id-range batches, each in its own transaction, the first
+// copy of an ISBN becoming its catalog entry. Batches are idempotent, so an interrupted migration
+// simply runs again. The columns then become the book's own description (see Book): they are made
+// nullable, and authors, plots and covers equal to the catalog ones are dropped to null in a second
+// pass of batches. An interrupted second pass only leaves some books with a copy of the catalog
+// description, which reads the same
+
+@Service
+@DependsOn("entityManagerFactory")
+public class CatalogMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogMigration.class);
+
+    private static final List<String> TABLES = List.of("books", "books_archive");
+
+    private static final String LEGACY_COLUMN = "SELECT count(*) FROM information_schema.columns " +
+            "WHERE table_schema = current_schema() AND table_name = ? AND column_name = 'book_plot' AND is_nullable = 'NO'";
+    private static final String NULLABLE_COVER = "ALTER TABLE %s ALTER COLUMN book_cover_url DROP NOT NULL";
+    private static final String ID_RANGE = "SELECT min(id) AS first_id, max(id) AS last_id FROM %s";
+    private static final String COPY_DESCRIPTIONS = "INSERT INTO catalog_books (isbn_code, book_title, book_author, book_plot, book_cover_url) " +
+            "SELECT DISTINCT ON (isbn_code) isbn_code, book_title, book_author, book_plot, coalesce(book_cover_url, '/images/unavailable.png') " +
+            "FROM %s WHERE id BETWEEN ? AND ? ORDER BY isbn_code, id ON CONFLICT (isbn_code) DO NOTHING";
+    private static final String DROP_CATALOG_COVERS = "UPDATE %s t SET book_cover_url = NULL FROM catalog_books c " +
+            "WHERE t.id BETWEEN ? AND ? AND c.isbn_code = t.isbn_code AND t.book_cover_url = c.book_cover_url";
+    // the legacy search column of the books indexes every description, the PostgresBookSearchIndex
+    // adds it back covering the books' own descriptions only
+    private static final String OWN_DESCRIPTION_COLUMNS = "ALTER TABLE %s DROP COLUMN IF EXISTS search_vector, " +
+            "ALTER COLUMN book_author DROP NOT NULL, ALTER COLUMN book_plot DROP NOT NULL";
+    private static final String DROP_CATALOG_DESCRIPTIONS = "UPDATE %s t SET book_author = NULL, book_plot = NULL FROM catalog_books c " +
+            "WHERE t.id BETWEEN ? AND ? AND c.isbn_code = t.isbn_code AND t.book_author IS NOT NULL " +
+            "AND t.book_title = c.book_title AND t.book_author = c.book_author AND t.book_plot = c.book_plot";
+
+    // added by Hibernate with the schema, unless the books were there before their catalog entries
+    private static final String CATALOG_FOREIGN_KEY = "SELECT count(*) FROM information_schema.table_constraints " +
+            "WHERE table_schema = current_schema() AND constraint_name = 'fk_books_catalog_books'";
+    private static final String ADD_CATALOG_FOREIGN_KEY = "ALTER TABLE books ADD CONSTRAINT fk_books_catalog_books " +
+            "FOREIGN KEY (isbn_code) REFERENCES catalog_books (isbn_code)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bookshelf.catalog.migration.batch-size:10000}")
+    private int batchSize;
+
+    @PostConstruct
+    public void migrate() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (String table : TABLES) {
+            if (jdbcTemplate.queryForObject(LEGACY_COLUMN, Long.class, table) > 0) {
+                migrateTable(transactionTemplate, table);
+            }
+        }
+        if (jdbcTemplate.queryForObject(CATALOG_FOREIGN_KEY, Long.class) == 0) {
+            jdbcTemplate.execute(ADD_CATALOG_FOREIGN_KEY);
+        }
+    }
+
+    private void migrateTable(TransactionTemplate transactionTemplate, String table) {
+        long start = System.nanoTime();
+        jdbcTemplate.execute(NULLABLE_COVER.formatted(table));
+        Map<String, Object> range = jdbcTemplate.queryForMap(ID_RANGE.formatted(table));
+        if (range.get("first_id") == null) {
+            jdbcTemplate.execute(OWN_DESCRIPTION_COLUMNS.formatted(table));
+            return;
+        }
+        long firstId = ((Number) range.get("first_id")).longValue();
+        long lastId = ((Number) range.get("last_id")).longValue();
+        long entries = 0;
+        for (long from = firstId; from <= lastId; from += batchSize) {
+            long batchFrom = from;
+            long batchTo = Math.min(from + batchSize - 1, lastId);
+            entries += transactionTemplate.execute(status -> {
+                int copied = jdbcTemplate.update(COPY_DESCRIPTIONS.formatted(table), batchFrom, batchTo);
+                jdbcTemplate.update(DROP_CATALOG_COVERS.formatted(table), batchFrom, batchTo);
+                return copied;
+            });
+        }
+        logger.info("{}: ids {} to {} migrated to the catalog, {} new catalog entries", table, firstId, lastId, entries);
+
+        jdbcTemplate.execute(OWN_DESCRIPTION_COLUMNS.formatted(table));
+        long catalogDescriptions = 0;
+        for (long from = firstId; from <= lastId; from += batchSize) {
+            long batchFrom = from;
+            long batchTo = Math.min(from + batchSize - 1, lastId);
+            catalogDescriptions += transactionTemplate.execute(status ->
+                    jdbcTemplate.update(DROP_CATALOG_DESCRIPTIONS.formatted(table), batchFrom, batchTo));
+        }
+        logger.info("{}: catalog migration completed in {} ms, {} copies of a catalog description dropped",
+                table, (System.nanoTime() - start) / 1_000_000, catalogDescriptions);
+    }
+}
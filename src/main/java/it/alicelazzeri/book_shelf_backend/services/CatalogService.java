@@ -0,0 +1,83 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.CatalogBook;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Shared catalog of editions. New books carry a transient catalog entry built from their payload
+// (see BookService.mapToEntity); attach swaps it for the shared entry of the ISBN, creating the ones
+// that don't exist yet. Creation is an INSERT ... ON CONFLICT DO NOTHING: the first description of an
+// ISBN becomes the catalog one and concurrent writers of the same new ISBN never fail. Entries are never
+// updated, a description differing from the catalog one stays on the user's book (see Book.describe)
+
+@Service
+public class CatalogService {
+
+    private static final String INSERT_IF_ABSENT = "INSERT INTO catalog_books (isbn_code, book_title, book_author, book_plot, book_cover_url) " +
+            "VALUES (?, ?, ?, ?, ?) ON CONFLICT (isbn_code) DO NOTHING";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional
+    public CatalogBook getOrCreate(CatalogBook candidate) {
+        return resolve(List.of(candidate)).get(candidate.getIsbnCode());
+    }
+
+    // one batched insert and one multi-load (second-level cache first, then a single query for the
+    // misses) for all the books; a description or cover equal to the catalog one is not kept on the book
+    @Transactional
+    public void attach(Collection<Book> books) {
+        List<CatalogBook> candidates = new ArrayList<>(books.size());
+        for (Book book : books) {
+            candidates.add(book.getCatalog());
+        }
+        Map<Long, CatalogBook> entries = resolve(candidates);
+        for (Book book : books) {
+            CatalogBook candidate = book.getCatalog();
+            CatalogBook entry = entries.get(candidate.getIsbnCode());
+            book.setCatalog(entry);
+            book.describe(candidate.getBookTitle(), candidate.getBookAuthor(), candidate.getBookPlot());
+            if (entry.getBookCoverUrl().equals(book.getBookCoverUrl())) {
+                book.setBookCoverUrl(null);
+            }
+        }
+    }
+
+    private Map<Long, CatalogBook> resolve(Collection<CatalogBook> candidates) {
+        // inserted in ISBN order, so concurrent batches wait on each other instead of deadlocking
+        Map<Long, CatalogBook> byIsbn = new TreeMap<>();
+        for (CatalogBook candidate : candidates) {
+            byIsbn.putIfAbsent(candidate.getIsbnCode(), candidate);
+        }
+        List<Object[]> inserts = new ArrayList<>(byIsbn.size());
+        for (CatalogBook candidate : byIsbn.values()) {
+            inserts.add(new Object[]{candidate.getIsbnCode(), candidate.getBookTitle(), candidate.getBookAuthor(),
+                    candidate.getBookPlot(), candidate.getBookCoverUrl()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_IF_ABSENT, inserts);
+
+        Map<Long, CatalogBook> entries = new HashMap<>();
+        for (CatalogBook entry : entityManager.unwrap(Session.class).byMultipleIds(CatalogBook.class)
+                .multiLoad(new ArrayList<>(byIsbn.keySet()))) {
+            entries.put(entry.getIsbnCode(), entry);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,27 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+@Service
+@ConditionalOnProperty(name = "bookshelf.covers.storage", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryCoverStorage implements CoverStorage {
+
+    @Autowired
+    private Cloudinary cloudinary;
+
+    @Override
+    public String store(String key, Path file, String contentType) throws IOException {
+        // the file is uploaded from disk, never loaded as a whole in memory
+        Map<?, ?> uploadResult = cloudinary.uploader().upload(file.toFile(),
+                ObjectUtils.asMap("public_id", key, "overwrite", true, "resource_type", "image"));
+        return (String) uploadResult.get("url");
+    }
+}
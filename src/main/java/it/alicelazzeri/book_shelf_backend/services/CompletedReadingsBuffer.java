@@ -0,0 +1,116 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Write-coalescing counter for completed readings: increments are accumulated per book in a LongAdder
+// (internally striped, so concurrent increments of the same book don't contend) and written to the
+// database in a single batched UPDATE per flush interval
+
+@Component
+public class CompletedReadingsBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompletedReadingsBuffer.class);
+
+    private static final String INCREMENT_QUERY = "UPDATE books SET completed_readings = completed_readings + ?, version = version + 1 WHERE id = ? AND deleting_date IS NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BookStatsService bookStatsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public void increment(long bookId) {
+        add(bookId, 1);
+    }
+
+    public long getPendingCount(long bookId) {
+        LongAdder adder = pending.get(bookId);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${bookshelf.readings.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<Object[]> updates = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta != 0) {
+                updates.add(new Object[]{delta, entry.getKey()});
+            }
+        }
+
+        // drop idle counters so the map doesn't grow with every book ever read; an increment racing
+        // with the removal is recovered by add()
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            pending.computeIfPresent(entry.getKey(), (bookId, adder) -> adder.sum() == 0 ? null : adder);
+        }
+
+        if (updates.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INCREMENT_QUERY, updates);
+        } catch (RuntimeException e) {
+            // keep the increments for the next flush instead of losing them
+            logger.error("Error while flushing {} completed readings updates, retrying on next flush", updates.size(), e);
+            for (Object[] update : updates) {
+                add((Long) update[1], (Long) update[0]);
+            }
+            return;
+        }
+
+        // the batch bypasses Hibernate, drop the cached copies of the updated books
+        Map<Long, Long> readingsByBook = new HashMap<>();
+        for (Object[] update : updates) {
+            entityManagerFactory.getCache().evict(Book.class, update[1]);
+            readingsByBook.put((Long) update[1], (Long) update[0]);
+        }
+        eventPublisher.publishEvent(new BooksChangedEvent(List.copyOf(readingsByBook.keySet())));
+        try {
+            bookStatsService.readingsFlushed(readingsByBook);
+        } catch (RuntimeException e) {
+            // the readings are written, the statistics catch up at the next reconciliation
+            logger.error("Error while updating the statistics of {} flushed books", readingsByBook.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void add(long bookId, long delta) {
+        LongAdder adder = pending.computeIfAbsent(bookId, id -> new LongAdder());
+        adder.add(delta);
+        // the adder may have been removed as idle by a concurrent flush: move what we added back in the map
+        if (pending.get(bookId) != adder) {
+            long orphaned = adder.sumThenReset();
+            if (orphaned != 0) {
+                add(bookId, orphaned);
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Disk cache of cover images served by GET /api/books/{id}/cover. Files are named after the SHA-256
+// of their content, so covers shared by many books (or URLs) are stored once, and the hash doubles as
+// strong ETag. Entries are kept in LRU order within a total size cap and read through a memory
+// mapping. Concurrent misses for the same URL are fetched once.
+// Book cover URLs are set by clients: remote covers are only fetched from the allowed hosts (the
+// storage delivery host), redirects are followed only within them, and only raster images are served.
+
+@Component
+public class CoverCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoverCache.class);
+    private static final int MAX_REDIRECTS = 3;
+    // cached covers (SHA-256 of the content) and downloads in progress
+    private static final Pattern CACHE_FILE_NAME = Pattern.compile("[0-9a-f]{64}|download-.*\\.tmp");
+
+    @Autowired
+    private CoverStorage coverStorage;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookshelf.covers.cache.dir:${java.io.tmpdir}/bookshelf-covers-cache}")
+    private String dirPath;
+
+    @Value("${bookshelf.covers.cache.max-bytes:268435456}")
+    private long maxBytes;
+
+    @Value("${bookshelf.covers.cache.max-file-bytes:10485760}")
+    private long maxFileBytes;
+
+    @Value("${bookshelf.covers.cache.fetch-timeout-seconds:10}")
+    private long fetchTimeoutSeconds;
+
+    @Value("${bookshelf.covers.cache.allowed-hosts:res.cloudinary.com}")
+    private List<String> allowedHosts;
+
+    // content hash -> entry, in access order (LRU); guarded by this
+    private final LinkedHashMap<String, CachedCover> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> hashesByUrl = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedCover>> loading = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    private Path dir;
+    private HttpClient httpClient;
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter evictionCounter;
+
+    public record CachedCover(String hash, Path file, MappedByteBuffer content, String contentType, Set<String> urls) {
+
+        public long length() {
+            return content.capacity();
+        }
+
+        // independent read position for every response
+        public ByteBuffer read() {
+            return content.duplicate();
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        // the index lives in memory, files of a previous run are not reused. Only the files named by
+        // the cache are removed: the directory is configurable and may be shared with other files
+        dir = Files.createDirectories(Path.of(dirPath));
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                if (CACHE_FILE_NAME.matcher(file.getFileName().toString()).matches()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(fetchTimeoutSeconds))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+
+        hitCounter = Counter.builder("bookshelf.covers.cache.requests").tag("result", "hit").register(meterRegistry);
+        missCounter = Counter.builder("bookshelf.covers.cache.requests").tag("result", "miss").register(meterRegistry);
+        evictionCounter = Counter.builder("bookshelf.covers.cache.evictions").register(meterRegistry);
+        Gauge.builder("bookshelf.covers.cache.size", this, CoverCache::getTotalBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public CachedCover get(String url) throws IOException {
+        if (url == null || url.isBlank()) {
+            throw new NotFoundException("Book has no cover.");
+        }
+        String hash = hashesByUrl.get(url);
+        if (hash != null) {
+            synchronized (this) {
+                CachedCover cover = entries.get(hash);
+                if (cover != null) {
+                    hitCounter.increment();
+                    return cover;
+                }
+            }
+        }
+        missCounter.increment();
+
+        CompletableFuture<CachedCover> result = new CompletableFuture<>();
+        CompletableFuture<CachedCover> inFlight = loading.putIfAbsent(url, result);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+        try {
+            CachedCover cover = load(url);
+            result.complete(cover);
+            return cover;
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(url, result);
+        }
+    }
+
+    private CachedCover load(String url) throws IOException {
+        Path download = Files.createTempFile(dir, "download-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            String contentType;
+            try (Source source = open(url);
+                 InputStream input = new DigestInputStream(source.input(), digest);
+                 OutputStream output = Files.newOutputStream(download)) {
+                contentType = source.contentType();
+                byte[] buffer = new byte[8192];
+                long size = 0;
+                for (int read; (read = input.read(buffer)) != -1; ) {
+                    size += read;
+                    if (size > maxFileBytes) {
+                        throw new IOException("Cover larger than " + maxFileBytes + " bytes: " + url);
+                    }
+                    output.write(buffer, 0, read);
+                }
+            }
+            return add(url, HexFormat.of().formatHex(digest.digest()), download, contentType);
+        } finally {
+            Files.deleteIfExists(download);
+        }
+    }
+
+    private synchronized CachedCover add(String url, String hash, Path download, String contentType) throws IOException {
+        CachedCover cover = entries.get(hash);
+        if (cover == null) {
+            Path file = dir.resolve(hash);
+            Files.move(download, file, StandardCopyOption.REPLACE_EXISTING);
+            MappedByteBuffer content;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            cover = new CachedCover(hash, file, content, contentType, ConcurrentHashMap.newKeySet());
+            entries.put(hash, cover);
+            totalBytes += cover.length();
+            evict(hash);
+        }
+        // identical content reached through another URL: only the mapping is added
+        cover.urls().add(url);
+        hashesByUrl.put(url, hash);
+        return cover;
+    }
+
+    // least recently used entries go first; the entry just added is always kept
+    private void evict(String keep) {
+        Iterator<CachedCover> iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            CachedCover eldest = iterator.next();
+            if (eldest.hash().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= eldest.length();
+            eldest.urls().forEach(url -> hashesByUrl.remove(url, eldest.hash()));
+            evictionCounter.increment();
+            try {
+                // responses still reading the mapping are not affected by the deletion
+                Files.deleteIfExists(eldest.file());
+            } catch (IOException e) {
+                logger.warn("Could not delete cached cover {}", eldest.file(), e);
+            }
+        }
+    }
+
+    // absolute URLs are fetched over HTTP from the allowed hosts, local storage URLs read from disk,
+    // other paths (e.g. /images/unavailable.png) from the static resources
+    private Source open(String url) throws IOException {
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+            return fetch(url);
+        }
+
+        Path localFile = coverStorage.resolveLocal(url);
+        if (localFile != null && Files.isRegularFile(localFile)) {
+            return new Source(Files.newInputStream(localFile), imageContentType(guessContentType(url), url));
+        }
+        ClassPathResource resource = new ClassPathResource("static" + (url.startsWith("/") ? url : "/" + url));
+        if (!url.contains("..") && resource.exists()) {
+            return new Source(resource.getInputStream(), imageContentType(guessContentType(url), url));
+        }
+        throw new NotFoundException("Cover not available: " + url);
+    }
+
+    // redirects are followed by hand, so every hop is checked against the allowed hosts
+    private Source fetch(String url) throws IOException {
+        URI uri = URI.create(url);
+        for (int redirects = 0; ; redirects++) {
+            checkAllowedHost(uri, url);
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(fetchTimeoutSeconds))
+                    .GET()
+                    .build();
+            HttpResponse<InputStream> response;
+            try {
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while fetching cover " + url, e);
+            }
+
+            int status = response.statusCode();
+            if (status == 301 || status == 302 || status == 303 || status == 307 || status == 308) {
+                response.body().close();
+                String location = response.headers().firstValue("Location").orElse(null);
+                if (location == null || redirects >= MAX_REDIRECTS) {
+                    throw new NotFoundException("Cover not available: " + url);
+                }
+                uri = uri.resolve(location);
+                continue;
+            }
+            if (status != 200) {
+                response.body().close();
+                throw new NotFoundException("Cover not available: " + url);
+            }
+            try {
+                String contentType = response.headers().firstValue("Content-Type").orElse(guessContentType(url));
+                return new Source(response.body(), imageContentType(contentType, url));
+            } catch (RuntimeException e) {
+                response.body().close();
+                throw e;
+            }
+        }
+    }
+
+    private void checkAllowedHost(URI uri, String url) {
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        boolean allowed = (scheme.equals("http") || scheme.equals("https"))
+                && uri.getRawUserInfo() == null
+                && allowedHosts.stream().anyMatch(allowedHost -> allowedHost.trim().equalsIgnoreCase(host));
+        if (!allowed) {
+            logger.warn("Cover {} not fetched, host of {} is not allowed", url, uri);
+            throw new NotFoundException("Cover not available: " + url);
+        }
+    }
+
+    // only raster images are served; SVG can carry scripts and anything else (e.g. text/html) would be
+    // served from the API origin
+    private static String imageContentType(String contentType, String url) {
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (IllegalArgumentException e) {
+            throw new NotFoundException("Cover not available: " + url);
+        }
+        if (!mediaType.getType().equals("image") || mediaType.getSubtype().startsWith("svg")) {
+            throw new NotFoundException("Cover not available, not an image: " + url);
+        }
+        return mediaType.getType() + "/" + mediaType.getSubtype();
+    }
+
+    private static String guessContentType(String url) {
+        return MediaTypeFactory.getMediaType(url).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Source(InputStream input, String contentType) implements AutoCloseable {
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Turns an uploaded cover into JPEG renditions of the standard widths. Images are decoded and
+// re-encoded, so EXIF and any other metadata of the original are dropped.
+
+@Component
+public class CoverImageProcessor {
+
+    @Value("${bookshelf.covers.widths:600,300,120}")
+    private List<Integer> widths;
+
+    @Value("${bookshelf.covers.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    // guard against decompression bombs: dimensions are checked before decoding
+    @Value("${bookshelf.covers.max-pixels:40000000}")
+    private long maxPixels;
+
+    public List<Integer> getWidths() {
+        return widths;
+    }
+
+    // returns width -> rendition file, created in the given directory; the caller deletes them
+    public Map<Integer, Path> process(Path source, Path workDir) throws IOException {
+        BufferedImage original = read(source);
+
+        Map<Integer, Path> renditions = new LinkedHashMap<>();
+        try {
+            for (int width : widths) {
+                BufferedImage resized = resize(original, width);
+                Path rendition = Files.createTempFile(workDir, "cover-" + width + "-", ".jpg");
+                renditions.put(width, rendition);
+                writeJpeg(resized, rendition);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Path rendition : renditions.values()) {
+                Files.deleteIfExists(rendition);
+            }
+            throw e;
+        }
+        return renditions;
+    }
+
+    private BufferedImage read(Path source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format.");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new IOException("Image too large: " + reader.getWidth(0) + "x" + reader.getHeight(0) + ".");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // images are only scaled down; transparency is flattened on white since JPEG has no alpha
+    private BufferedImage resize(BufferedImage image, int maxWidth) {
+        int width = Math.min(maxWidth, image.getWidth());
+        int height = Math.max(1, Math.round(image.getHeight() * (width / (float) image.getWidth())));
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Destination of processed book covers; implementations are selected with bookshelf.covers.storage
+
+public interface CoverStorage {
+
+    // store the file under the given key, returns the public URL of the stored file
+    String store(String key, Path file, String contentType) throws IOException;
+
+    // local file behind a URL returned by store(), null when the storage is remote
+    default Path resolveLocal(String url) {
+        return null;
+    }
+}
@@ -0,0 +1,49 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// In-memory state of an asynchronous cover upload; fields are updated by the processing thread
+// and read by status requests, hence volatile
+
+@Getter
+@Setter
+public class CoverUploadJob {
+
+    public enum Status {
+        QUEUED,
+        PROCESSING,
+        UPLOADING,
+        COMPLETED,
+        // a newer upload for the same book was submitted, this one was not applied
+        SUPERSEDED,
+        FAILED
+    }
+
+    private final String id;
+    private final long bookId;
+    private final Path stagedFile;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String coverUrl;
+    private volatile Map<Integer, String> thumbnailUrls = Map.of();
+    private volatile int uploadAttempts;
+    private volatile String errorMessage;
+    private volatile LocalDateTime completedAt;
+    private volatile LocalDateTime expiresAt;
+
+    public CoverUploadJob(String id, long bookId, Path stagedFile) {
+        this.id = id;
+        this.bookId = bookId;
+        this.stagedFile = stagedFile;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.SUPERSEDED || status == Status.FAILED;
+    }
+}
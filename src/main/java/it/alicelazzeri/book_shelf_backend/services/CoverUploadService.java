@@ -0,0 +1,325 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.exceptions.BadRequestException;
+import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
+import it.alicelazzeri.book_shelf_backend.exceptions.TooManyRequestsException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Asynchronous cover uploads: the request only streams the file to a staging directory; resizing,
+// storage upload (retried with backoff from the staged renditions) and the bookCoverUrl update run
+// on a bounded pool, without any transaction open except for the final short update. In the virtual
+// thread mode the pool only resizes: the storage upload, which is mostly waiting on the network, is
+// handed over to a virtual thread so the worker can take the next file
+
+@Service
+public class CoverUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoverUploadService.class);
+
+    private static final Pattern STAGED_FILE_NAME = Pattern.compile("cover-(\\d+)-.*\\.upload");
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private CoverImageProcessor coverImageProcessor;
+
+    @Autowired
+    private CoverStorage coverStorage;
+
+    @Value("${bookshelf.covers.staging-dir:${java.io.tmpdir}/bookshelf-covers-staging}")
+    private String stagingDirPath;
+
+    @Value("${bookshelf.covers.threads:2}")
+    private int threads;
+
+    @Value("${bookshelf.covers.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${bookshelf.covers.upload-attempts:3}")
+    private int uploadAttempts;
+
+    @Value("${bookshelf.covers.upload-backoff-ms:1000}")
+    private long uploadBackoffMs;
+
+    @Value("${bookshelf.covers.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // uploads in flight at once in the virtual thread mode, further hand-overs wait for a slot
+    @Value("${bookshelf.covers.upload-concurrency:16}")
+    private int uploadConcurrency;
+
+    private final Map<String, CoverUploadJob> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, CoverUploadJob> latestJobsByBook = new ConcurrentHashMap<>();
+
+    private Path stagingDir;
+    private ThreadPoolTaskExecutor executor;
+    private SimpleAsyncTaskExecutor uploadExecutor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        stagingDir = Files.createDirectories(Path.of(stagingDirPath));
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("cover-upload-");
+        executor.initialize();
+        if (virtualThreads) {
+            uploadExecutor = new SimpleAsyncTaskExecutor("cover-store-");
+            uploadExecutor.setVirtualThreads(true);
+            uploadExecutor.setConcurrencyLimit(uploadConcurrency);
+        }
+    }
+
+    // queued uploads are dropped, their staged files are picked up by resumeStagedUploads on the next start
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        if (uploadExecutor != null) {
+            uploadExecutor.close();
+        }
+    }
+
+    // Stage the uploaded file and queue its processing; a newer upload for the same book
+    // supersedes the pending ones
+
+    public CoverUploadJob submitUpload(long bookId, MultipartFile coverFile) throws IOException {
+        if (coverFile == null || coverFile.isEmpty()) {
+            throw new BadRequestException("Book cover file is empty or null.");
+        }
+        if (coverFile.getContentType() == null || !coverFile.getContentType().startsWith("image/")) {
+            throw new BadRequestException("Book cover file must be an image.");
+        }
+        bookService.getBookById(bookId);
+
+        Path stagedFile = Files.createTempFile(stagingDir, "cover-" + bookId + "-", ".upload");
+        try {
+            // streamed (or moved, when the container already spooled it to disk), never read in memory
+            coverFile.transferTo(stagedFile);
+        } catch (IOException | RuntimeException e) {
+            deleteFile(stagedFile);
+            throw e;
+        }
+
+        CoverUploadJob job = queue(bookId, stagedFile);
+        if (job == null) {
+            throw new TooManyRequestsException("Too many cover uploads in progress, please retry later.");
+        }
+        return job;
+    }
+
+    // Jobs live in memory, so a stop with uploads still queued or in progress leaves their staged files
+    // behind: the latest upload of each book still existing is queued again, the other files (older
+    // uploads, renditions half written) are removed
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeStagedUploads() throws IOException {
+        Map<Long, Path> latestUploads = new HashMap<>();
+        List<Path> leftovers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(stagingDir)) {
+            for (Path file : files.toList()) {
+                Long bookId = stagedBookId(file);
+                if (bookId == null) {
+                    leftovers.add(file);
+                    continue;
+                }
+                Path previous = latestUploads.put(bookId, file);
+                if (previous != null && Files.getLastModifiedTime(previous).compareTo(Files.getLastModifiedTime(file)) > 0) {
+                    latestUploads.put(bookId, previous);
+                    leftovers.add(file);
+                } else if (previous != null) {
+                    leftovers.add(previous);
+                }
+            }
+        }
+        leftovers.forEach(this::deleteFile);
+
+        int resumed = 0;
+        for (Map.Entry<Long, Path> upload : latestUploads.entrySet()) {
+            try {
+                bookService.getBookById(upload.getKey());
+            } catch (NotFoundException e) {
+                deleteFile(upload.getValue());
+                continue;
+            }
+            if (queue(upload.getKey(), upload.getValue()) == null) {
+                logger.warn("Cover upload queue full, dropping staged cover {}", upload.getValue());
+                continue;
+            }
+            resumed++;
+        }
+        if (resumed > 0 || !leftovers.isEmpty()) {
+            logger.info("Resumed {} staged cover uploads, removed {} leftover files", resumed, leftovers.size());
+        }
+    }
+
+    public CoverUploadJob getJob(String jobId) {
+        CoverUploadJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new NotFoundException("Cover upload with id: " + jobId + " not found.");
+        }
+        return job;
+    }
+
+    // Remove finished uploads whose status has expired
+
+    @Scheduled(fixedDelayString = "${bookshelf.covers.cleanup-interval-ms:60000}")
+    public void removeExpiredUploads() {
+        LocalDateTime now = LocalDateTime.now();
+        for (CoverUploadJob job : jobs.values()) {
+            if (job.isFinished() && job.getExpiresAt() != null && job.getExpiresAt().isBefore(now)) {
+                jobs.remove(job.getId());
+            }
+        }
+    }
+
+    private void process(CoverUploadJob job) {
+        if (isSuperseded(job)) {
+            finish(job, CoverUploadJob.Status.SUPERSEDED, Map.of());
+            return;
+        }
+        Map<Integer, Path> renditions;
+        try {
+            job.setStatus(CoverUploadJob.Status.PROCESSING);
+            renditions = coverImageProcessor.process(job.getStagedFile(), stagingDir);
+        } catch (Exception e) {
+            logger.error("Error while processing cover upload {} for book with id: {}", job.getId(), job.getBookId(), e);
+            job.setErrorMessage(e.getMessage());
+            finish(job, CoverUploadJob.Status.FAILED, Map.of());
+            return;
+        }
+
+        if (uploadExecutor == null) {
+            store(job, renditions);
+            return;
+        }
+        try {
+            uploadExecutor.execute(() -> store(job, renditions));
+        } catch (TaskRejectedException e) {
+            // the executor is shutting down
+            job.setErrorMessage(e.getMessage());
+            finish(job, CoverUploadJob.Status.FAILED, renditions);
+        }
+    }
+
+    private void store(CoverUploadJob job, Map<Integer, Path> renditions) {
+        CoverUploadJob.Status status = CoverUploadJob.Status.FAILED;
+        try {
+            job.setStatus(CoverUploadJob.Status.UPLOADING);
+            Map<Integer, String> urls = new LinkedHashMap<>();
+            for (Map.Entry<Integer, Path> rendition : renditions.entrySet()) {
+                String key = "books/" + job.getBookId() + "/cover-" + rendition.getKey() + "-" + job.getId() + ".jpg";
+                urls.put(rendition.getKey(), storeWithRetry(job, key, rendition.getValue()));
+            }
+            job.setThumbnailUrls(urls);
+
+            // the largest rendition becomes the book cover, in a short transaction of its own
+            if (isSuperseded(job)) {
+                status = CoverUploadJob.Status.SUPERSEDED;
+                return;
+            }
+            String coverUrl = urls.get(Collections.max(urls.keySet()));
+            bookService.updateBookCoverUrl(job.getBookId(), coverUrl);
+            job.setCoverUrl(coverUrl);
+            status = CoverUploadJob.Status.COMPLETED;
+        } catch (Exception e) {
+            logger.error("Error while processing cover upload {} for book with id: {}", job.getId(), job.getBookId(), e);
+            job.setErrorMessage(e.getMessage());
+        } finally {
+            finish(job, status, renditions);
+        }
+    }
+
+    private void finish(CoverUploadJob job, CoverUploadJob.Status status, Map<Integer, Path> renditions) {
+        deleteFile(job.getStagedFile());
+        renditions.values().forEach(this::deleteFile);
+        LocalDateTime completedAt = LocalDateTime.now();
+        job.setCompletedAt(completedAt);
+        job.setExpiresAt(completedAt.plusMinutes(ttlMinutes));
+        job.setStatus(status);
+        latestJobsByBook.remove(job.getBookId(), job);
+    }
+
+    // storage failures are usually transient: the upload is retried from the local rendition
+    private String storeWithRetry(CoverUploadJob job, String key, Path file) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            job.setUploadAttempts(job.getUploadAttempts() + 1);
+            try {
+                return coverStorage.store(key, file, "image/jpeg");
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= uploadAttempts) {
+                    throw e;
+                }
+                logger.warn("Cover upload {} failed (attempt {}), retrying: {}", key, attempt, e.getMessage());
+                Thread.sleep(uploadBackoffMs * (1L << (attempt - 1)));
+            }
+        }
+    }
+
+    // null (and the staged file removed) when the queue is full
+    private CoverUploadJob queue(long bookId, Path stagedFile) {
+        CoverUploadJob job = new CoverUploadJob(UUID.randomUUID().toString(), bookId, stagedFile);
+        jobs.put(job.getId(), job);
+        latestJobsByBook.put(bookId, job);
+        try {
+            executor.execute(() -> process(job));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            latestJobsByBook.remove(bookId, job);
+            deleteFile(stagedFile);
+            return null;
+        }
+        return job;
+    }
+
+    // book id of an uploaded file staged by submitUpload ("cover-<bookId>-<random>.upload"), null for renditions
+    private static Long stagedBookId(Path file) {
+        Matcher matcher = STAGED_FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.valueOf(matcher.group(1)) : null;
+    }
+
+    private boolean isSuperseded(CoverUploadJob job) {
+        return latestJobsByBook.get(job.getBookId()) != job;
+    }
+
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete cover file {}", file, e);
+        }
+    }
+}
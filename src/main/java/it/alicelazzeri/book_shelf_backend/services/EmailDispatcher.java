@@ -0,0 +1,193 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.alicelazzeri.book_shelf_backend.entities.EmailOutboxMessage;
+import it.alicelazzeri.book_shelf_backend.entities.enums.EmailStatus;
+import it.alicelazzeri.book_shelf_backend.repositories.EmailOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UnsupportedEncodingException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Drains the email outbox: due messages are claimed in a short transaction, sent as one batch over
+// a single SMTP connection outside of any transaction, and then marked as sent or rescheduled with
+// exponential backoff. A claim is a lease: messages of a dispatcher that dies mid-batch become due
+// again once the lease expires.
+
+@Component
+public class EmailDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailDispatcher.class);
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private JavaMailSender javaMailSender;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookshelf.mail.from:bookshelf.customerservice@gmail.com}")
+    private String fromAddress;
+
+    @Value("${bookshelf.mail.from-name:BookShelf}")
+    private String fromName;
+
+    @Value("${bookshelf.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${bookshelf.mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${bookshelf.mail.outbox.initial-backoff-seconds:30}")
+    private long initialBackoffSeconds;
+
+    @Value("${bookshelf.mail.outbox.max-backoff-minutes:60}")
+    private long maxBackoffMinutes;
+
+    @Value("${bookshelf.mail.outbox.lease-seconds:300}")
+    private long leaseSeconds;
+
+    private TransactionTemplate transactionTemplate;
+    private Counter sentCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        sentCounter = Counter.builder("bookshelf.mail.outbox.sent")
+                .description("Emails delivered from the outbox")
+                .register(meterRegistry);
+        retriedCounter = Counter.builder("bookshelf.mail.outbox.retried")
+                .description("Failed deliveries rescheduled with backoff")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("bookshelf.mail.outbox.failed")
+                .description("Emails given up after the maximum number of attempts")
+                .register(meterRegistry);
+    }
+
+    // returns the number of messages delivered
+
+    @Scheduled(fixedDelayString = "${bookshelf.mail.outbox.poll-interval-ms:5000}")
+    public int dispatch() {
+        int delivered = 0;
+        List<EmailOutboxMessage> batch;
+        do {
+            batch = claimBatch();
+            if (!batch.isEmpty()) {
+                delivered += send(batch);
+            }
+        } while (batch.size() == batchSize);
+        return delivered;
+    }
+
+    private List<EmailOutboxMessage> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutboxMessage> messages = emailOutboxRepository.findDueForUpdate(
+                    EmailStatus.PENDING, now, PageRequest.of(0, batchSize));
+            for (EmailOutboxMessage message : messages) {
+                message.setAttempts(message.getAttempts() + 1);
+                message.setNextAttemptAt(now.plusSeconds(leaseSeconds));
+            }
+            return messages;
+        });
+    }
+
+    private int send(List<EmailOutboxMessage> batch) {
+        Map<Long, String> errors = new HashMap<>();
+        Map<MimeMessage, Long> mimeMessages = new LinkedHashMap<>();
+        for (EmailOutboxMessage message : batch) {
+            try {
+                mimeMessages.put(createMimeMessage(message), message.getId());
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                errors.put(message.getId(), e.getMessage());
+            }
+        }
+
+        if (!mimeMessages.isEmpty()) {
+            try {
+                // JavaMailSenderImpl opens one connection for the whole array
+                javaMailSender.send(mimeMessages.keySet().toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                e.getFailedMessages().forEach((failed, exception) ->
+                        errors.put(mimeMessages.get(failed), exception.getMessage()));
+                if (e.getFailedMessages().isEmpty()) {
+                    mimeMessages.values().forEach(id -> errors.put(id, e.getMessage()));
+                }
+            } catch (MailException e) {
+                mimeMessages.values().forEach(id -> errors.put(id, e.getMessage()));
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutboxMessage> messages = emailOutboxRepository.findAllById(
+                    batch.stream().map(EmailOutboxMessage::getId).toList());
+            for (EmailOutboxMessage message : messages) {
+                if (!errors.containsKey(message.getId())) {
+                    message.setStatus(EmailStatus.SENT);
+                    message.setSentAt(now);
+                    message.setLastError(null);
+                    sentCounter.increment();
+                } else if (message.getAttempts() >= maxAttempts) {
+                    message.setStatus(EmailStatus.FAILED);
+                    message.setLastError(errors.get(message.getId()));
+                    failedCounter.increment();
+                    logger.error("Giving up email {} to {} after {} attempts: {}",
+                            message.getId(), message.getRecipient(), message.getAttempts(), message.getLastError());
+                } else {
+                    message.setNextAttemptAt(now.plus(backoff(message.getAttempts())));
+                    message.setLastError(errors.get(message.getId()));
+                    retriedCounter.increment();
+                    logger.warn("Email {} to {} failed (attempt {}), retrying at {}: {}", message.getId(),
+                            message.getRecipient(), message.getAttempts(), message.getNextAttemptAt(), message.getLastError());
+                }
+            }
+        });
+        return batch.size() - errors.size();
+    }
+
+    // initial backoff doubled at every attempt, capped
+    private Duration backoff(int attempts) {
+        Duration max = Duration.ofMinutes(maxBackoffMinutes);
+        Duration backoff = Duration.ofSeconds(initialBackoffSeconds).multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(max) > 0 ? max : backoff;
+    }
+
+    private MimeMessage createMimeMessage(EmailOutboxMessage message) throws MessagingException, UnsupportedEncodingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+        helper.setTo(message.getRecipient());
+        helper.setFrom(fromAddress, fromName);
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getBody(), true);
+        return mimeMessage;
+    }
+}
@@ -0,0 +1,34 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.entities.EmailOutboxMessage;
+import it.alicelazzeri.book_shelf_backend.repositories.EmailOutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+@Service
+public class EmailOutboxService {
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailTemplateRegistry emailTemplateRegistry;
+
+    // Queue an HTML email; joins the caller's transaction, so the email is only sent if the
+    // operation producing it commits
+
+    @Transactional
+    public EmailOutboxMessage enqueue(String recipient, String subject, String htmlBody) {
+        return emailOutboxRepository.save(new EmailOutboxMessage(recipient, subject, htmlBody));
+    }
+
+    // Queue an email rendered from one of the registered templates
+
+    @Transactional
+    public EmailOutboxMessage enqueue(String recipient, EmailTemplate template, Map<String, ?> variables) {
+        return enqueue(recipient, template.getSubject(), emailTemplateRegistry.render(template, variables));
+    }
+}
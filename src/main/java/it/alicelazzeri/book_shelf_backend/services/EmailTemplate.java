@@ -0,0 +1,20 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import lombok.Getter;
+
+// Email templates available to the EmailTemplateRegistry, loaded from classpath:email-templates/<fileName>
+
+@Getter
+public enum EmailTemplate {
+    REGISTRATION("registration.html", "Welcome to BookShelf! 📚"),
+    PASSWORD_RESET("password-reset.html", "Reset your BookShelf password 🔑"),
+    EXPORT_READY("export-ready.html", "Your BookShelf PDF is ready 📄");
+
+    private final String fileName;
+    private final String subject;
+
+    EmailTemplate(String fileName, String subject) {
+        this.fileName = fileName;
+        this.subject = subject;
+    }
+}
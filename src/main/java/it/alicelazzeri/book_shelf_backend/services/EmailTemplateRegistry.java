@@ -0,0 +1,119 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Email templates are parsed once at startup into literal/variable segments; rendering appends the
+// segments into a per-thread reusable buffer, HTML-escaping every variable value.
+// Placeholders are written as {{name}}; render time is recorded per template (bookshelf.mail.template.render).
+
+@Component
+public class EmailTemplateRegistry {
+
+    private static final String TEMPLATES_PATH = "email-templates/";
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    // buffers grown by an unusually large render are not kept around
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<EmailTemplate, CompiledTemplate> templates = new EnumMap<>(EmailTemplate.class);
+    private final Map<EmailTemplate, Timer> renderTimers = new EnumMap<>(EmailTemplate.class);
+    private final ThreadLocal<StringBuilder> buffer = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+    @PostConstruct
+    public void loadTemplates() throws IOException {
+        for (EmailTemplate template : EmailTemplate.values()) {
+            try (InputStream input = new ClassPathResource(TEMPLATES_PATH + template.getFileName()).getInputStream()) {
+                templates.put(template, compile(template, new String(input.readAllBytes(), StandardCharsets.UTF_8)));
+            }
+            renderTimers.put(template, Timer.builder("bookshelf.mail.template.render")
+                    .description("Time spent rendering email templates")
+                    .tag("template", template.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    public String render(EmailTemplate template, Map<String, ?> variables) {
+        CompiledTemplate compiled = templates.get(template);
+        long start = System.nanoTime();
+        StringBuilder output = buffer.get();
+        output.setLength(0);
+        try {
+            for (Segment segment : compiled.segments()) {
+                if (segment.variable() == null) {
+                    output.append(segment.text());
+                } else {
+                    Object value = variables.get(segment.variable());
+                    if (value == null) {
+                        throw new IllegalArgumentException("Missing variable '" + segment.variable() + "' for email template " + template);
+                    }
+                    appendEscaped(output, value.toString());
+                }
+            }
+            return output.toString();
+        } finally {
+            if (output.capacity() > MAX_RETAINED_BUFFER) {
+                buffer.remove();
+            }
+            renderTimers.get(template).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static CompiledTemplate compile(EmailTemplate template, String source) {
+        List<Segment> segments = new ArrayList<>();
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                segments.add(new Segment(source.substring(position), null));
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalStateException("Unclosed placeholder in email template " + template + " at offset " + open);
+            }
+            if (open > position) {
+                segments.add(new Segment(source.substring(position, open), null));
+            }
+            segments.add(new Segment(null, source.substring(open + OPEN.length(), close).trim()));
+            position = close + CLOSE.length();
+        }
+        return new CompiledTemplate(segments.toArray(new Segment[0]));
+    }
+
+    private static void appendEscaped(StringBuilder output, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> output.append("&amp;");
+                case '<' -> output.append("&lt;");
+                case '>' -> output.append("&gt;");
+                case '"' -> output.append("&quot;");
+                case '\'' -> output.append("&#39;");
+                default -> output.append(c);
+            }
+        }
+    }
+
+    private record Segment(String text, String variable) {
+    }
+
+    private record CompiledTemplate(Segment[] segments) {
+    }
+}
@@ -0,0 +1,87 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.entities.BaseEntity;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BooksVersionDTO;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import it.alicelazzeri.book_shelf_backend.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// ETags built from the @Version columns, computed with version-only queries so a conditional GET
+// answered with 304 never loads the entities themselves. A single book gets a strong tag: its version
+// changes with every change of its representation, and strong tags are what If-Match compares (RFC 9110
+// 13.1.1). The aggregate tags of a user's books and of a user are weak, they only support revalidation
+
+@Service
+public class EntityTagService {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    public Optional<String> getBookTag(long id) {
+        return bookRepository.findVersionById(id).map(EntityTagService::strongTag);
+    }
+
+    // empty when the user has no books, there is no representation to revalidate then
+    public Optional<String> getUserBooksTag(long userId) {
+        BooksVersionDTO books = bookRepository.findVersionByUserId(userId);
+        return books.count() == 0 ? Optional.empty() : Optional.of(weakTag(format(books)));
+    }
+
+    // the user representation embeds the books, so their aggregate version is part of the tag
+    public Optional<String> getUserTag(long id) {
+        return userRepository.findVersionById(id)
+                .map(version -> weakTag(version + "-" + format(bookRepository.findVersionByUserId(id))));
+    }
+
+    public static String getTag(BaseEntity entity) {
+        return strongTag(entity.getVersion());
+    }
+
+    // Versions listed in an If-Match header; null when there is no precondition (header absent or "*").
+    // If-Match uses the strong comparison: weak tags never match
+
+    public static List<Long> parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+        List<Long> versions = new ArrayList<>();
+        for (String tag : ifMatch.split(",")) {
+            String value = tag.trim();
+            if (value.equals("*")) {
+                return null;
+            }
+            if (value.startsWith("W/")) {
+                continue;
+            }
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            try {
+                versions.add(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                // not a tag issued by this API, it can never match
+            }
+        }
+        return versions;
+    }
+
+    private static String strongTag(Object value) {
+        return "\"" + value + "\"";
+    }
+
+    private static String weakTag(Object value) {
+        return "W/\"" + value + "\"";
+    }
+
+    private static String format(BooksVersionDTO books) {
+        return books.count() + "-" + books.idSum() + "-" + books.versionSum();
+    }
+}
@@ -0,0 +1,164 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index kept in memory: sorted term -> (book id -> weight) postings, so prefix lookups are a
+// range scan over the terms. Weights follow the Postgres ranking (title > author > plot).
+
+@Service
+@ConditionalOnProperty(name = "bookshelf.search.mode", havingValue = "memory")
+public class InMemoryBookSearchIndex implements BookSearchIndex {
+
+    private static final float TITLE_WEIGHT = 1.0f;
+    private static final float AUTHOR_WEIGHT = 0.4f;
+    private static final float PLOT_WEIGHT = 0.2f;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, IndexedBook> books = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private TransactionTemplate readTransaction;
+
+    private record IndexedBook(BookSummaryDTO summary, Set<String> terms) {
+    }
+
+    @PostConstruct
+    public void init() {
+        // a transaction of its own: after commit the persistence context of the write is still bound
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readTransaction.setReadOnly(true);
+    }
+
+    // once the application is ready, so after the seed runners
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        readTransaction.executeWithoutResult(status -> bookRepository.findAll().forEach(this::index));
+    }
+
+    // The committed state of the changed books is read back: a rolled back write leaves the index as it
+    // was, a book no longer found (deleted or purged) is removed. Writes outside of a transaction (the
+    // buffered readings flush) are handled right away
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        readTransaction.executeWithoutResult(status -> {
+            Set<Long> missing = new HashSet<>(event.bookIds());
+            for (Book book : bookRepository.findAllById(event.bookIds())) {
+                index(book);
+                missing.remove(book.getId());
+            }
+            missing.forEach(this::remove);
+        });
+    }
+
+    @Override
+    public List<BookSummaryDTO> search(String query, Long userId, int limit) {
+        List<String> tokens = BookSearchIndex.tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = null;
+            for (String token : tokens) {
+                Map<Long, Float> tokenScores = new HashMap<>();
+                for (Map<Long, Float> posting : postings.subMap(token, true, token + Character.MAX_VALUE, true).values()) {
+                    posting.forEach((bookId, weight) -> tokenScores.merge(bookId, weight, Float::sum));
+                }
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    // every term has to match
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((bookId, score) -> score + tokenScores.get(bookId));
+                }
+            }
+            return scores.entrySet().stream()
+                    .filter(entry -> userId == null || books.get(entry.getKey()).summary().userId() == userId)
+                    .sorted(Map.Entry.<Long, Float>comparingByValue(Comparator.reverseOrder())
+                            .thenComparing(Map.Entry.<Long, Float>comparingByKey()))
+                    .limit(limit)
+                    .map(entry -> books.get(entry.getKey()).summary())
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(Book book) {
+        Map<String, Float> weights = new HashMap<>();
+        addTerms(weights, book.getBookTitle(), TITLE_WEIGHT);
+        addTerms(weights, book.getBookAuthor(), AUTHOR_WEIGHT);
+        addTerms(weights, book.getBookPlot(), PLOT_WEIGHT);
+        BookSummaryDTO summary = new BookSummaryDTO(book.getId(), book.getUser().getId(), book.getBookTitle(),
+                book.getBookAuthor(), book.getIsbnCode(), book.getAddingDate(), book.getCompletedReadings(), book.getBookCoverUrl());
+
+        lock.writeLock().lock();
+        try {
+            removeTerms(book.getId());
+            books.put(book.getId(), new IndexedBook(summary, weights.keySet()));
+            weights.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new HashMap<>()).put(book.getId(), weight));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeTerms(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeTerms(long bookId) {
+        IndexedBook indexed = books.remove(bookId);
+        if (indexed == null) {
+            return;
+        }
+        for (String term : indexed.terms()) {
+            Map<Long, Float> posting = postings.get(term);
+            posting.remove(bookId);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private void addTerms(Map<String, Float> weights, String text, float weight) {
+        for (String token : BookSearchIndex.tokenize(text)) {
+            weights.merge(token, weight, Float::sum);
+        }
+    }
+}
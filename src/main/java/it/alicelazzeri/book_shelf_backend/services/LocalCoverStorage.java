@@ -0,0 +1,45 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Covers kept on the local filesystem (tests and local development), published under base-url
+
+@Service
+@ConditionalOnProperty(name = "bookshelf.covers.storage", havingValue = "local")
+public class LocalCoverStorage implements CoverStorage {
+
+    @Value("${bookshelf.covers.local.dir:${java.io.tmpdir}/bookshelf-covers}")
+    private String dir;
+
+    @Value("${bookshelf.covers.local.base-url:/covers/}")
+    private String baseUrl;
+
+    @Override
+    public Path resolveLocal(String url) {
+        if (url == null || !url.startsWith(baseUrl)) {
+            return null;
+        }
+        Path root = Path.of(dir).toAbsolutePath().normalize();
+        Path file = root.resolve(url.substring(baseUrl.length())).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    @Override
+    public String store(String key, Path file, String contentType) throws IOException {
+        Path root = Path.of(dir).toAbsolutePath().normalize();
+        Path target = root.resolve(key).normalize();
+        if (!target.startsWith(root)) {
+            throw new IOException("Invalid cover key: " + key);
+        }
+        Files.createDirectories(target.getParent());
+        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        return baseUrl + key;
+    }
+}
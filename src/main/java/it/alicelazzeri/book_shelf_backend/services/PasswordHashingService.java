@@ -0,0 +1,110 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.alicelazzeri.book_shelf_backend.exceptions.TooManyRequestsException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+// Password hashing is deliberately CPU-expensive: it runs on a dedicated pool sized to the CPUs with a
+// bounded queue, so a burst of registrations is capped (429 once the queue is full) instead of
+// occupying every request thread. Callers hash before opening their transaction.
+
+@Service
+public class PasswordHashingService {
+
+    @Autowired
+    private PasswordEncoder bcrypt;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 0: one thread per available processor
+    @Value("${bookshelf.password.hashing.threads:0}")
+    private int threads;
+
+    @Value("${bookshelf.password.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    private ThreadPoolTaskExecutor executor;
+    private Timer hashTimer;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hashing-");
+        executor.initialize();
+
+        hashTimer = Timer.builder("bookshelf.password.hash")
+                .description("Time spent hashing passwords")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("bookshelf.password.hash.rejected")
+                .description("Hash requests rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("bookshelf.password.hash.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Hash requests waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("bookshelf.password.hash.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Hash requests being computed")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public String encode(String rawPassword) {
+        return await(submit(() -> bcrypt.encode(rawPassword)));
+    }
+
+    // checking a password costs as much as hashing it, so it runs on the same pool
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return await(submit(() -> bcrypt.matches(rawPassword, encodedPassword)));
+    }
+
+    // true when the hash was produced with another encoder or work factor than the current one
+
+    public boolean needsRehash(String encodedPassword) {
+        return bcrypt.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> Future<T> submit(Supplier<T> task) {
+        try {
+            return executor.submit(() -> hashTimer.record(task));
+        } catch (TaskRejectedException e) {
+            rejectedCounter.increment();
+            throw new TooManyRequestsException("Too many password hashing requests in progress, please retry later.");
+        }
+    }
+
+    private <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error while hashing password", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+// In-memory state of an asynchronous PDF export; fields are updated by the rendering thread
+// and read by status requests, hence volatile
+
+@Getter
+@Setter
+public class PdfExportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final long userId;
+    private final long totalBooks;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile long booksWritten;
+    private volatile Path file;
+    private volatile String errorMessage;
+    private volatile LocalDateTime completedAt;
+    private volatile LocalDateTime expiresAt;
+
+    public PdfExportJob(String id, long userId, long totalBooks) {
+        this.id = id;
+        this.userId = userId;
+        this.totalBooks = totalBooks;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public int getProgress() {
+        if (status == Status.COMPLETED || totalBooks == 0) {
+            return status == Status.COMPLETED ? 100 : 0;
+        }
+        return (int) Math.min(99, booksWritten * 100 / totalBooks);
+    }
+}
@@ -0,0 +1,157 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
+import it.alicelazzeri.book_shelf_backend.exceptions.TooManyRequestsException;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Asynchronous PDF exports: documents are rendered to a temp file by a bounded pool, so large
+// libraries don't tie up a request thread for the whole render
+
+@Service
+public class PdfExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfExportService.class);
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Value("${bookshelf.pdf.export.dir:${java.io.tmpdir}/bookshelf-exports}")
+    private String exportDirPath;
+
+    @Value("${bookshelf.pdf.export.threads:2}")
+    private int threads;
+
+    @Value("${bookshelf.pdf.export.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${bookshelf.pdf.export.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private final Map<String, PdfExportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, PdfExportJob> activeJobsByUser = new ConcurrentHashMap<>();
+
+    private Path exportDir;
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        exportDir = Files.createDirectories(Path.of(exportDirPath));
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("pdf-export-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Submit an export for the user; a request for a user that already has a queued or running
+    // export returns the existing job instead of rendering the same document twice
+
+    public PdfExportJob submitExport(long userId) {
+        User user = userService.getUserById(userId).orElseThrow(
+                () -> new NotFoundException("User with id: " + userId + " not found."));
+        long totalBooks = bookRepository.countByUserId(userId);
+
+        PdfExportJob job = activeJobsByUser.compute(userId, (id, existing) ->
+                existing != null && !existing.isFinished() ? existing : new PdfExportJob(UUID.randomUUID().toString(), id, totalBooks));
+        if (jobs.putIfAbsent(job.getId(), job) != null) {
+            return job;
+        }
+
+        try {
+            executor.execute(() -> render(job, user));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            activeJobsByUser.remove(userId, job);
+            throw new TooManyRequestsException("Too many PDF exports in progress, please retry later.");
+        }
+        return job;
+    }
+
+    public PdfExportJob getJob(String jobId) {
+        PdfExportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new NotFoundException("Export with id: " + jobId + " not found.");
+        }
+        return job;
+    }
+
+    // Remove finished exports whose artifact has expired
+
+    @Scheduled(fixedDelayString = "${bookshelf.pdf.export.cleanup-interval-ms:60000}")
+    public void removeExpiredExports() {
+        LocalDateTime now = LocalDateTime.now();
+        for (PdfExportJob job : jobs.values()) {
+            if (job.isFinished() && job.getExpiresAt() != null && job.getExpiresAt().isBefore(now)) {
+                jobs.remove(job.getId());
+                deleteFile(job.getFile());
+            }
+        }
+    }
+
+    private void render(PdfExportJob job, User user) {
+        job.setStatus(PdfExportJob.Status.RUNNING);
+        PdfExportJob.Status status = PdfExportJob.Status.FAILED;
+        Path file = null;
+        try {
+            file = Files.createTempFile(exportDir, "books-" + user.getId() + "-", ".pdf");
+            try (OutputStream output = Files.newOutputStream(file)) {
+                bookService.writeBooksPDF(user, output, job::setBooksWritten);
+            }
+            job.setFile(file);
+            status = PdfExportJob.Status.COMPLETED;
+        } catch (Exception e) {
+            logger.error("Error while exporting PDF for user with id: {}", user.getId(), e);
+            deleteFile(file);
+            job.setErrorMessage(e.getMessage());
+        } finally {
+            LocalDateTime completedAt = LocalDateTime.now();
+            job.setCompletedAt(completedAt);
+            job.setExpiresAt(completedAt.plusMinutes(ttlMinutes));
+            job.setStatus(status);
+            activeJobsByUser.remove(user.getId(), job);
+        }
+    }
+
+    private void deleteFile(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete export file {}", file, e);
+        }
+    }
+}
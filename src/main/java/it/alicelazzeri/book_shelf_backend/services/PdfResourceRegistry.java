@@ -0,0 +1,106 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.pdf.BaseFont;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+// Fonts and logo used by the PDF export, parsed once from the classpath at startup and shared by every
+// document (BaseFont and Font instances are never mutated after loading, so they are safe to share)
+
+@Component
+public class PdfResourceRegistry {
+
+    private static final String CRIMSON_TEXT_PATH = "fonts/CrimsonText/CrimsonText-Regular.ttf";
+    private static final String WORK_SANS_PATH = "fonts/WorkSans/WorkSans-Regular.ttf";
+    private static final String LOGO_PATH = "static/images/logo.png";
+
+    // Color configuration
+    private static final BaseColor BLACK = new BaseColor(0, 0, 0);
+    private static final BaseColor BOOK_COLOR = new BaseColor(212, 98, 64);
+    private static final BaseColor SHELF_COLOR = new BaseColor(21, 43, 60);
+    private static final BaseColor USER_COLOR = new BaseColor(212, 98, 64);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BaseFont crimsonText;
+    private BaseFont workSans;
+    private Image logo;
+
+    private Font crimsonTextFont;
+    private Font bookTitleFont;
+    private Font workSansFont;
+    private Font userFont;
+    private Font bookHeaderFont;
+    private Font shelfHeaderFont;
+
+    @PostConstruct
+    public void loadResources() throws IOException, DocumentException {
+        long start = System.nanoTime();
+
+        crimsonText = loadFont(CRIMSON_TEXT_PATH);
+        workSans = loadFont(WORK_SANS_PATH);
+
+        crimsonTextFont = new Font(crimsonText, 12, Font.NORMAL, BLACK);
+        bookTitleFont = new Font(crimsonText, 12, Font.BOLDITALIC, BLACK);
+        workSansFont = new Font(workSans, 13, Font.NORMAL, BLACK);
+        userFont = new Font(workSans, 13, Font.BOLD, USER_COLOR);
+        bookHeaderFont = new Font(workSans, 20, Font.BOLD, BOOK_COLOR);
+        shelfHeaderFont = new Font(workSans, 20, Font.BOLD, SHELF_COLOR);
+
+        logo = Image.getInstance(readClasspathResource(LOGO_PATH));
+        logo.scaleToFit(80, 80);
+        logo.setAlignment(Element.ALIGN_CENTER);
+
+        Timer.builder("bookshelf.pdf.resources.load")
+                .description("Time spent parsing PDF fonts and logo")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Font set for a single document; the same shared instances are returned on every call
+
+    public PdfFonts getFonts() {
+        return new PdfFonts(crimsonTextFont, bookTitleFont, workSansFont, userFont, bookHeaderFont, shelfHeaderFont);
+    }
+
+    // Image positions are stored on the instance by iText, so every document gets a shallow copy
+    // sharing the already decoded image data
+
+    public Image getLogo() {
+        return Image.getInstance(logo);
+    }
+
+    private BaseFont loadFont(String path) throws IOException, DocumentException {
+        return BaseFont.createFont(path, BaseFont.IDENTITY_H, BaseFont.EMBEDDED, true, readClasspathResource(path), null);
+    }
+
+    private byte[] readClasspathResource(String path) throws IOException {
+        try (InputStream input = new ClassPathResource(path).getInputStream()) {
+            return input.readAllBytes();
+        }
+    }
+
+    public record PdfFonts(
+            Font crimsonTextFont,
+            Font bookTitleFont,
+            Font workSansFont,
+            Font userFont,
+            Font bookHeaderFont,
+            Font shelfHeaderFont
+    ) {
+    }
+}
@@ -0,0 +1,101 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+// after the catalog migration, which drops the legacy search column of the books
+@DependsOn({"entityManagerFactory", "catalogMigration"})
+@ConditionalOnProperty(name = "bookshelf.search.mode", havingValue = "postgres", matchIfMissing = true)
+public class PostgresBookSearchIndex implements BookSearchIndex {
+
+    // Title weighs more than author, author more than plot; 'simple' configuration so that prefix
+    // matching is not affected by language-specific stemming. The vector is kept on the catalog, so
+    // the GIN index grows with the distinct titles, and matches are joined to the live copies using the
+    // catalog description. Books described by their user carry a vector of their own description
+    // (null otherwise), matched directly: the two branches are disjoint and each one uses its index
+    private static final String SEARCH_VECTOR = "setweight(to_tsvector('simple', coalesce(book_title, '')), 'A') || " +
+            "setweight(to_tsvector('simple', coalesce(book_author, '')), 'B') || " +
+            "setweight(to_tsvector('simple', coalesce(book_plot, '')), 'C')";
+    private static final List<String> SEARCH_COLUMNS = List.of(
+            "ALTER TABLE catalog_books ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (" + SEARCH_VECTOR + ") STORED",
+            "CREATE INDEX IF NOT EXISTS idx_catalog_books_search_vector ON catalog_books USING GIN (search_vector)",
+            "ALTER TABLE books ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (" +
+                    "CASE WHEN book_author IS NOT NULL THEN " + SEARCH_VECTOR + " END) STORED",
+            "CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING GIN (search_vector) WHERE deleting_date IS NULL");
+
+    private static final String SEARCH_QUERY = "SELECT * FROM (" +
+            "SELECT b.id, b.user_id, b.book_title, c.book_author, c.isbn_code, b.adding_date, b.completed_readings, " +
+            "coalesce(b.book_cover_url, c.book_cover_url) AS book_cover_url, ts_rank(c.search_vector, q) AS rank " +
+            "FROM catalog_books c JOIN books b ON b.isbn_code = c.isbn_code, to_tsquery('simple', :query) q " +
+            "WHERE c.search_vector @@ q AND b.book_author IS NULL AND b.deleting_date IS NULL %1$s" +
+            "UNION ALL " +
+            "SELECT b.id, b.user_id, b.book_title, b.book_author, c.isbn_code, b.adding_date, b.completed_readings, " +
+            "coalesce(b.book_cover_url, c.book_cover_url), ts_rank(b.search_vector, q) " +
+            "FROM books b JOIN catalog_books c ON c.isbn_code = b.isbn_code, to_tsquery('simple', :query) q " +
+            "WHERE b.search_vector @@ q AND b.deleting_date IS NULL %1$s" +
+            ") matches ORDER BY rank DESC, id LIMIT :limit";
+    private static final String USER_CONDITION = "AND b.user_id = :userId ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // The generated columns and their GIN indexes are not expressible with JPA mappings, they are added
+    // once the schema has been created by Hibernate
+
+    @PostConstruct
+    public void createSearchColumn() {
+        SEARCH_COLUMNS.forEach(jdbcTemplate::execute);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookSummaryDTO> search(String query, Long userId, int limit) {
+        List<String> tokens = BookSearchIndex.tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        // every term is matched as a prefix: "harry pot" -> harry:* & pot:*
+        String tsQuery = String.join(" & ", tokens.stream().map(token -> token + ":*").toList());
+
+        Query nativeQuery = entityManager.createNativeQuery(SEARCH_QUERY.formatted(userId != null ? USER_CONDITION : ""))
+                .setParameter("query", tsQuery)
+                .setParameter("limit", limit);
+        if (userId != null) {
+            nativeQuery.setParameter("userId", userId);
+        }
+
+        List<BookSummaryDTO> results = new ArrayList<>();
+        for (Object result : nativeQuery.getResultList()) {
+            Object[] row = (Object[]) result;
+            results.add(new BookSummaryDTO(
+                    ((Number) row[0]).longValue(),
+                    ((Number) row[1]).longValue(),
+                    (String) row[2],
+                    (String) row[3],
+                    ((Number) row[4]).longValue(),
+                    row[5] instanceof Date date ? date.toLocalDate() : (LocalDate) row[5],
+                    ((Number) row[6]).intValue(),
+                    (String) row[7]
+            ));
+        }
+        return results;
+    }
+}
@@ -4,21 +4,29 @@ import it.alicelazzeri.book_shelf_backend.entities.User;
 import it.alicelazzeri.book_shelf_backend.entities.enums.Role;
 import it.alicelazzeri.book_shelf_backend.exceptions.BadRequestException;
 import it.alicelazzeri.book_shelf_backend.exceptions.NotFoundException;
+import it.alicelazzeri.book_shelf_backend.exceptions.UnauthorizedException;
 import it.alicelazzeri.book_shelf_backend.payloads.auth.UserRegisterRequestDTO;
 import it.alicelazzeri.book_shelf_backend.payloads.auth.UserUpdateRequestDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.UserSummaryDTO;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
 import it.alicelazzeri.book_shelf_backend.repositories.UserRepository;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.UnsupportedEncodingException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
@@ -27,56 +35,38 @@ public class UserService {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder bcrypt;
+    private BookRepository bookRepository;
 
     @Autowired
-    private JavaMailSender javaMailSender;
+    private BookArchiver bookArchiver;
+
+    @Autowired
+    private BookStatsService bookStatsService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // the registration email is queued in the outbox within the registration transaction and
+    // delivered asynchronously by the EmailDispatcher
 
     public void sendRegistrationEmail(String email, String recipientName) {
-        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-        try {
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-            helper.setTo(email);
-            helper.setFrom("bookshelf.customerservice@gmail.com", "BookShelf");
-            helper.setSubject("Welcome to BookShelf! 📚");
-            String emailContent = "<html>" +
-                    "<head>" +
-                    "<style>" +
-                    "@import url('https://fonts.googleapis.com/css2?family=Work+Sans:ital,wght@0,100..900;1,100..900&display=swap');" +
-                    "@import url('https://fonts.googleapis.com/css2?family=Crimson+Text:ital,wght@0,400;0,600;0,700;1,400;1,600;1,700&display=swap');" +
-                    "body { font-family: 'Crimson Text', Georgia, serif; font-weight: 400 }" +
-                    ".email-container { padding: 20px; }" +
-                    "</style>" +
-                    "</head>" +
-                    "<body>" +
-                    "<div class=\"email-container\">" +
-                    "<div>" +
-                    "<p style=\"font-size: 16px;\">Hello <span style=\"color: #D46240;\">" + recipientName + "</span>, and welcome to 📚 <span style=\"font-family: 'Work Sans', Arial, serif;\"><span style=\"color: #D46240;\">Book</span><span style=\"color: #152B3C;\">Shelf</span></span>! 📚</p>" +
-                    "<p style=\"font-size: 16px;\">We are delighted to have you join our community of book enthusiasts.</p>" +
-                    "<p style=\"font-size: 16px;\">Your registration has been successful 🎉, and you are now part of a platform where you can manage your personal library, track your reading progress, and much more. ✨</p>" +
-                    "<p style=\"font-size: 16px;\">With BookShelf, you can:</p>" +
-                    "<ul>" +
-                    "<li style=\"font-size: 16px;\">📚 <strong>Add, Edit, and Remove Books</strong>: Manage the books in your library with ease.</li>" +
-                    "<li style=\"font-size: 16px;\">🔍 <strong>Track Reading Progress</strong>: Keep track of how many times you've read each book.</li>" +
-                    "<li style=\"font-size: 16px;\">📅 <strong>View Book Details</strong>: See detailed information about each book, including title, author, ISBN, and more.</li>" +
-                    "</ul>" +
-                    "<p style=\"font-size: 16px;\">To get started, log in to your account and explore the features available to you. Remember, organizing your library has never been easier! 📖</p>" +
-                    "<p style=\"font-size: 16px;\">❓ If you have any questions or need assistance, please don't hesitate to reach out to our support team via email at <a href='mailto:bookshelf.customerservice@gmail.com'>bookshelf.customerservice@gmail.com</a>.</p>" +
-                    "<p style=\"font-size: 16px;\">Happy Reading! 💖</p>" +
-                    "<p style=\"font-size: 16px;\">📚 The BookShelf Team 📚</p>" +
-                    "</div>" +
-                    "</div>" +
-                    "</body>" +
-                    "</html>";
-
-            helper.setText(emailContent, true);
-            javaMailSender.send(mimeMessage);
-
-        } catch (MessagingException e) {
-            e.printStackTrace();
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
+        emailOutboxService.enqueue(email, EmailTemplate.REGISTRATION, Map.of("recipientName", recipientName));
     }
 
     private String generateAvatarUrl(String firstName, String lastName) {
@@ -90,6 +80,21 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    // GET users page as projections: one query for the users (plus the page count) and, when
+    // includeBooks is set, a single batch query for the books of the whole page
+
+    @Transactional(readOnly = true)
+    public Page<UserSummaryDTO> getUsers(Pageable pageable, boolean includeBooks) {
+        Page<UserSummaryDTO> users = userRepository.findAllSummaries(pageable);
+        if (!includeBooks || users.isEmpty()) {
+            return users;
+        }
+        List<Long> userIds = users.map(UserSummaryDTO::id).getContent();
+        Map<Long, List<BookSummaryDTO>> booksByUser = bookRepository.findSummariesByUserIds(userIds).stream()
+                .collect(Collectors.groupingBy(BookSummaryDTO::userId));
+        return users.map(user -> user.withBooks(booksByUser.getOrDefault(user.id(), List.of())));
+    }
+
     // GET user by id
 
     @Transactional(readOnly = true)
@@ -97,57 +102,33 @@ public class UserService {
         return userRepository.findById(id);
     }
 
+    // the user and its books, fetched in one query for the user's representation
+    @Transactional(readOnly = true)
+    public Optional<User> getUserWithBooksById(long id) {
+        return userRepository.findWithBooksById(id);
+    }
+
     // POST saving user
 
-    @Transactional
     public User saveUser(UserRegisterRequestDTO userPayload) {
-        Optional<User> existingUser = userRepository.findByEmail(userPayload.email());
-        if (existingUser.isPresent()) {
-            throw new BadRequestException("User with email: " + userPayload.email() + " already exists.");
-        }
-        User user = new User();
-        user.setFirstName(userPayload.firstName());
-        user.setLastName(userPayload.lastName());
-        user.setEmail(userPayload.email());
-        user.setRole(userPayload.role() != null ? userPayload.role() : Role.USER);
-        user.setPassword(bcrypt.encode(userPayload.password()));
-        user.setAvatarUrl(userPayload.avatarUrl() != null && !userPayload.avatarUrl().isEmpty() ?
-                userPayload.avatarUrl() : generateAvatarUrl(userPayload.firstName(), userPayload.lastName()));
-        sendRegistrationEmail(userPayload.email(), userPayload.firstName());
-        userRepository.save(user);
-        return user;
+        return registerUser(userPayload, userPayload.role() != null ? userPayload.role() : Role.USER);
     }
 
     // POST saving user with admin role
 
-    @Transactional
-    public User saveUserAdmin(UserRegisterRequestDTO userPayload){
-
-        Optional<User> existingUser = userRepository.findByEmail(userPayload.email());
-        if (existingUser.isPresent()) {
-            throw new BadRequestException("User with email: " + userPayload.email() + " already exists.");
-        }
-        User user = new User();
-        user.setFirstName(userPayload.firstName());
-        user.setLastName(userPayload.lastName());
-        user.setEmail(userPayload.email());
-        user.setRole(Role.ADMIN);
-        user.setPassword(bcrypt.encode(userPayload.password()));
-        user.setAvatarUrl(userPayload.avatarUrl() != null && !userPayload.avatarUrl().isEmpty() ?
-                userPayload.avatarUrl() : generateAvatarUrl(userPayload.firstName(), userPayload.lastName()));
-        sendRegistrationEmail(userPayload.email(), userPayload.firstName());
-        userRepository.save(user);
-        return user;
+    public User saveUserAdmin(UserRegisterRequestDTO userPayload) {
+        return registerUser(userPayload, Role.ADMIN);
     }
 
-    // PUT updating existing user
+    // PUT updating existing user (the new password, if any, is hashed before the transaction opens)
 
-    @Transactional
     public User updateUser(long id, UserUpdateRequestDTO userPayload) {
-        Optional<User> userOptional = getUserById(id);
+        String passwordHash = userPayload.password() != null && !userPayload.password().isEmpty() ?
+                passwordHashingService.encode(userPayload.password()) : null;
 
-        if (userOptional.isPresent()) {
-            User user = userOptional.get();
+        return transactionTemplate.execute(status -> {
+            User user = getUserWithBooksById(id).orElseThrow(
+                    () -> new NotFoundException("User with id: " + id + " not found."));
             user.setFirstName(userPayload.firstName());
             user.setLastName(userPayload.lastName());
 
@@ -155,13 +136,41 @@ public class UserService {
                 user.setEmail(userPayload.email());
             }
 
-            if (userPayload.password() != null && !userPayload.password().isEmpty()) {
-                user.setPassword(bcrypt.encode(userPayload.password()));
+            if (passwordHash != null) {
+                user.setPassword(passwordHash);
             }
 
             return userRepository.save(user);
-        } else {
-            throw new NotFoundException("User with id: " + id + " not found.");
+        });
+    }
+
+    // The password is hashed on the hashing pool before the transaction opens, so no database
+    // connection is held while hashing; the email check is repeated inside the transaction
+
+    private User registerUser(UserRegisterRequestDTO userPayload, Role role) {
+        // fail fast on duplicates without paying for the hash
+        transactionTemplate.executeWithoutResult(status -> checkEmailAvailable(userPayload.email()));
+        String passwordHash = passwordHashingService.encode(userPayload.password());
+
+        return transactionTemplate.execute(status -> {
+            checkEmailAvailable(userPayload.email());
+            User user = new User();
+            user.setFirstName(userPayload.firstName());
+            user.setLastName(userPayload.lastName());
+            user.setEmail(userPayload.email());
+            user.setRole(role);
+            user.setPassword(passwordHash);
+            user.setAvatarUrl(userPayload.avatarUrl() != null && !userPayload.avatarUrl().isEmpty() ?
+                    userPayload.avatarUrl() : generateAvatarUrl(userPayload.firstName(), userPayload.lastName()));
+            sendRegistrationEmail(userPayload.email(), userPayload.firstName());
+            userRepository.save(user);
+            return user;
+        });
+    }
+
+    private void checkEmailAvailable(String email) {
+        if (findUserByEmail(email).isPresent()) {
+            throw new BadRequestException("User with email: " + email + " already exists.");
         }
     }
 
@@ -172,6 +181,9 @@ public class UserService {
         Optional<User> userOptional = getUserById(id);
 
         if(userOptional.isPresent()){
+            // the cascade would only soft-delete the books (see Book), they are removed for good first
+            bookStatsService.userRemoved(id);
+            bookArchiver.purgeUserBooks(id);
             userRepository.deleteById(id);
             return "User with id: " + id + " deleted correctly.";
         }
@@ -184,7 +196,7 @@ public class UserService {
 
     @Transactional(readOnly = true)
     public User findByEmail(String email) {
-        Optional<User> userOptional = userRepository.findByEmail(email);
+        Optional<User> userOptional = findUserByEmail(email);
 
         if (userOptional.isPresent()){
             return userOptional.get();
@@ -193,4 +205,32 @@ public class UserService {
             throw new NotFoundException("User with email: " + email + " not found.");
         }
     }
+
+    // Check the credentials of a login. When the stored hash was made with another encoder or work
+    // factor, it is replaced with a hash of the current configuration while the raw password is at
+    // hand (unless the password was changed meanwhile)
+
+    public User authenticate(String email, String password) {
+        User user = transactionTemplate.execute(status -> findUserByEmail(email).orElse(null));
+        if (user == null || !passwordHashingService.matches(password, user.getPassword())) {
+            throw new UnauthorizedException("Invalid email or password.");
+        }
+
+        String storedHash = user.getPassword();
+        if (passwordHashingService.needsRehash(storedHash)) {
+            String upgradedHash = passwordHashingService.encode(password);
+            transactionTemplate.executeWithoutResult(status -> getUserById(user.getId())
+                    .filter(current -> current.getPassword().equals(storedHash))
+                    .ifPresent(current -> current.setPassword(upgradedHash)));
+            user.setPassword(upgradedHash);
+        }
+        return user;
+    }
+
+    // email is the natural id of User: the lookup is served by the users-by-email cache region
+    // and only hits the database on a miss
+
+    private Optional<User> findUserByEmail(String email) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(email);
+    }
 }
@@ -0,0 +1,79 @@
+package it.alicelazzeri.book_shelf_backend;
+
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.CatalogBook;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.entities.enums.Role;
+import it.alicelazzeri.book_shelf_backend.payloads.validation.IsbnValidator;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import it.alicelazzeri.book_shelf_backend.repositories.UserRepository;
+import it.alicelazzeri.book_shelf_backend.services.CatalogService;
+import it.alicelazzeri.book_shelf_backend.services.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Users and books created straight through the repositories, bypassing the API. The users created are
+// remembered and removed with their books by deleteCreatedUsers, to be called from an @AfterEach;
+// catalog entries are shared and never deleted, so each test class uses ISBNs of its own
+
+@Component
+public class BookShelfFixtures {
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CatalogService catalogService;
+
+	@Autowired
+	private UserService userService;
+
+	private final List<Long> createdUserIds = new CopyOnWriteArrayList<>();
+
+	// user named "<firstName> Reader", with the email <firstName>.reader@bookshelf.test
+	public User createUser(String firstName) {
+		User user = new User(firstName, "Reader", firstName.toLowerCase() + ".reader@bookshelf.test", "password", null);
+		user.setRole(Role.USER);
+		user = userRepository.save(user);
+		createdUserIds.add(user.getId());
+		return user;
+	}
+
+	// book added today, described by the catalog entry of the ISBN (created with the given title when missing)
+	public Book createBook(User user, long isbnCode, String title) {
+		if (!IsbnValidator.isValidIsbn(isbnCode)) {
+			throw new IllegalArgumentException("Invalid fixture ISBN: " + isbnCode);
+		}
+		CatalogBook catalogBook = catalogService.getOrCreate(CatalogBook.builder()
+				.withIsbnCode(IsbnValidator.toIsbn13(isbnCode))
+				.withBookTitle(title)
+				.withBookAuthor(title + " Author")
+				.withBookPlot(title + " plot")
+				.withBookCoverUrl("/images/unavailable.png")
+				.build());
+		Book book = Book.builder()
+				.withCatalog(catalogBook)
+				.withAddingDate(LocalDate.now())
+				.withUser(user)
+				.build();
+		book.describe(title, catalogBook.getBookAuthor(), catalogBook.getBookPlot());
+		return bookRepository.save(book);
+	}
+
+	// users already removed by the test (or rolled back with its transaction) are skipped
+	public void deleteCreatedUsers() {
+		for (Long userId : createdUserIds) {
+			if (userRepository.existsById(userId)) {
+				userService.deleteUser(userId);
+			}
+		}
+		createdUserIds.clear();
+	}
+}
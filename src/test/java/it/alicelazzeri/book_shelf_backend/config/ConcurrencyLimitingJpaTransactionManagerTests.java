@@ -0,0 +1,43 @@
+package it.alicelazzeri.book_shelf_backend.config;
+
+import it.alicelazzeri.book_shelf_backend.exceptions.TooManyRequestsException;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class ConcurrencyLimitingJpaTransactionManagerTests {
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void transactionsBeyondTheLimitWaitThenAreRejected() throws Exception {
+		ConcurrencyLimitingJpaTransactionManager transactionManager = new ConcurrencyLimitingJpaTransactionManager(1, 200);
+		transactionManager.setEntityManagerFactory(entityManagerFactory);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		transactionTemplate.executeWithoutResult(outer -> {
+			// a joined transaction runs on the permit of the outer one
+			transactionTemplate.executeWithoutResult(inner -> assertEquals(1, transactionManager.getActiveCount()));
+
+			CompletableFuture<Void> concurrent = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+			}));
+			ExecutionException e = assertThrows(ExecutionException.class, concurrent::get);
+			assertInstanceOf(TooManyRequestsException.class, e.getCause());
+		});
+
+		assertEquals(0, transactionManager.getActiveCount());
+		assertEquals(1, transactionManager.getRejectedCount());
+		transactionTemplate.executeWithoutResult(status -> assertEquals(1, transactionManager.getActiveCount()));
+	}
+}
@@ -0,0 +1,103 @@
+package it.alicelazzeri.book_shelf_backend.controllers;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import it.alicelazzeri.book_shelf_backend.repositories.CatalogBookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BookConditionalRequestsTests {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CatalogBookRepository catalogBookRepository;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	private User user;
+	private Book book;
+
+	@BeforeEach
+	void createBook() {
+		user = fixtures.createUser("Conditional");
+		book = fixtures.createBook(user, 9780000000040L, "Conditional Title");
+	}
+
+	@AfterEach
+	void deleteBook() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void unchangedBookIsNotModified() {
+		ResponseEntity<String> first = restTemplate.getForEntity("/api/books/" + book.getId(), String.class);
+		String entityTag = first.getHeaders().getETag();
+		assertNotNull(entityTag);
+
+		assertEquals(HttpStatus.NOT_MODIFIED, get("/api/books/" + book.getId(), entityTag).getStatusCode());
+		assertEquals(HttpStatus.NOT_MODIFIED, get("/api/books/user/" + user.getId(), get("/api/books/user/" + user.getId(), null).getHeaders().getETag()).getStatusCode());
+
+		// a completed reading changes the book, the tag no longer matches
+		restTemplate.exchange("/api/books/" + book.getId() + "/increment-readings", HttpMethod.PUT, null, String.class);
+		ResponseEntity<String> changed = get("/api/books/" + book.getId(), entityTag);
+		assertEquals(HttpStatus.OK, changed.getStatusCode());
+		assertNotEquals(entityTag, changed.getHeaders().getETag());
+	}
+
+	@Test
+	void staleIfMatchIsRejected() {
+		String entityTag = restTemplate.getForEntity("/api/books/" + book.getId(), String.class).getHeaders().getETag();
+		assertFalse(entityTag.startsWith("W/"));
+		// If-Match uses the strong comparison, a weak tag never matches
+		assertEquals(HttpStatus.PRECONDITION_FAILED, put("W/" + entityTag, "Weak update").getStatusCode());
+
+		ResponseEntity<String> updated = put(entityTag, "First update");
+		assertEquals(HttpStatus.OK, updated.getStatusCode());
+		assertNotEquals(entityTag, updated.getHeaders().getETag());
+
+		// the second client still holds the tag of the original version
+		assertEquals(HttpStatus.PRECONDITION_FAILED, put(entityTag, "Second update").getStatusCode());
+		assertEquals("First update", bookRepository.findById(book.getId()).orElseThrow().getBookTitle());
+		assertEquals("Conditional Title", catalogBookRepository.findById(book.getIsbnCode()).orElseThrow().getBookTitle());
+	}
+
+	private ResponseEntity<String> get(String url, String ifNoneMatch) {
+		HttpHeaders headers = new HttpHeaders();
+		if (ifNoneMatch != null) {
+			headers.setIfNoneMatch(ifNoneMatch);
+		}
+		return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+	}
+
+	private ResponseEntity<String> put(String ifMatch, String bookTitle) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfMatch(ifMatch);
+		BookDTO payload = new BookDTO(bookTitle, book.getBookAuthor(), book.getIsbnCode(), book.getAddingDate(), null,
+				book.getBookPlot(), book.getCompletedReadings(), book.getBookCoverUrl());
+		return restTemplate.exchange("/api/books/" + book.getId(), HttpMethod.PUT, new HttpEntity<>(payload, headers), String.class);
+	}
+}
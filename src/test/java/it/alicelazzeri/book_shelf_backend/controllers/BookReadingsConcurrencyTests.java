@@ -0,0 +1,97 @@
+package it.alicelazzeri.book_shelf_backend.controllers;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import it.alicelazzeri.book_shelf_backend.services.CompletedReadingsBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BookReadingsConcurrencyTests {
+
+	private static final int THREADS = 16;
+	private static final int INCREMENTS_PER_THREAD = 50;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	@Autowired
+	private CompletedReadingsBuffer completedReadingsBuffer;
+
+	private Book book;
+
+	@BeforeEach
+	void createBook() {
+		book = fixtures.createBook(fixtures.createUser("Concurrent"), 9780000000033L, "Concurrent Title");
+	}
+
+	@AfterEach
+	void deleteBook() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void concurrentIncrementsAreNotLost() throws Exception {
+		hammer(() -> {
+			ResponseEntity<String> response = restTemplate.exchange(
+					"/api/books/" + book.getId() + "/increment-readings", HttpMethod.PUT, null, String.class);
+			assertEquals(HttpStatus.OK, response.getStatusCode());
+		});
+
+		assertEquals(THREADS * INCREMENTS_PER_THREAD, bookRepository.findById(book.getId()).orElseThrow().getCompletedReadings());
+	}
+
+	@Test
+	void bufferedIncrementsAreNotLostWhileFlushing() throws Exception {
+		hammer(() -> {
+			completedReadingsBuffer.increment(book.getId());
+			completedReadingsBuffer.flush();
+		});
+		completedReadingsBuffer.flush();
+
+		assertEquals(THREADS * INCREMENTS_PER_THREAD, bookRepository.findById(book.getId()).orElseThrow().getCompletedReadings());
+	}
+
+	private void hammer(Runnable increment) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int j = 0; j < INCREMENTS_PER_THREAD; j++) {
+					increment.run();
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,185 @@
+package it.alicelazzeri.book_shelf_backend.controllers;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.payloads.exports.PdfExportJobDTO;
+import it.alicelazzeri.book_shelf_backend.services.BookService;
+import it.alicelazzeri.book_shelf_backend.services.PdfExportJob;
+import it.alicelazzeri.book_shelf_backend.services.PdfExportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Downloads go through the real connector (sendfile) with TestRestTemplate, and through MockMvc,
+// whose requests carry no sendfile support, for the FileChannel.transferTo fallback. Exports expire
+// right away (ttl 0) but are only removed when the tests run the cleanup
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"bookshelf.pdf.export.ttl-minutes=0",
+		"bookshelf.pdf.export.cleanup-interval-ms=86400000"
+})
+@AutoConfigureMockMvc
+class PdfExportControllerTests {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private PdfExportService pdfExportService;
+
+	@SpyBean
+	private BookService bookService;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	private User user;
+
+	@BeforeEach
+	void createBooks() {
+		user = fixtures.createUser("Export");
+		fixtures.createBook(user, 9780000000095L, "Export First Title");
+		fixtures.createBook(user, 9780000000101L, "Export Second Title");
+	}
+
+	@AfterEach
+	void deleteUsers() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void rangesAreServedBySendfileAndTransferTo() throws Exception {
+		PdfExportJob job = completedExport(user);
+		byte[] pdf = Files.readAllBytes(job.getFile());
+		String fileUrl = "/api/books/exports/" + job.getId() + "/file";
+
+		ResponseEntity<byte[]> full = restTemplate.getForEntity(fileUrl, byte[].class);
+		assertEquals(HttpStatus.OK, full.getStatusCode());
+		assertArrayEquals(pdf, full.getBody());
+		assertEquals("bytes", full.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+
+		ResponseEntity<byte[]> partial = download(fileUrl, "bytes=0-99");
+		assertEquals(HttpStatus.PARTIAL_CONTENT, partial.getStatusCode());
+		assertEquals("bytes 0-99/" + pdf.length, partial.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(Arrays.copyOfRange(pdf, 0, 100), partial.getBody());
+
+		// suffix range through the transferTo fallback
+		MockHttpServletResponse fallback = mockMvc.perform(get(fileUrl).header(HttpHeaders.RANGE, "bytes=-50"))
+				.andReturn().getResponse();
+		assertEquals(HttpStatus.PARTIAL_CONTENT.value(), fallback.getStatus());
+		assertEquals("bytes " + (pdf.length - 50) + "-" + (pdf.length - 1) + "/" + pdf.length,
+				fallback.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(Arrays.copyOfRange(pdf, pdf.length - 50, pdf.length), fallback.getContentAsByteArray());
+
+		// only single ranges are honoured, multiple ranges get the full content
+		ResponseEntity<byte[]> multiple = download(fileUrl, "bytes=0-9,20-29");
+		assertEquals(HttpStatus.OK, multiple.getStatusCode());
+		assertArrayEquals(pdf, multiple.getBody());
+	}
+
+	@Test
+	void unsatisfiableRangeIsRejected() throws Exception {
+		PdfExportJob job = completedExport(user);
+		long length = Files.size(job.getFile());
+
+		MockHttpServletResponse response = mockMvc.perform(get("/api/books/exports/" + job.getId() + "/file")
+				.header(HttpHeaders.RANGE, "bytes=" + length + "-")).andReturn().getResponse();
+
+		assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), response.getStatus());
+		assertEquals("bytes */" + length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+	}
+
+	@Test
+	void pendingExportIsSharedByTheUsersRequests() throws Exception {
+		User otherUser = fixtures.createUser("Other");
+		CountDownLatch release = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			release.await(10, TimeUnit.SECONDS);
+			return invocation.callRealMethod();
+		}).when(bookService).writeBooksPDF(any(User.class), any(OutputStream.class), any(LongConsumer.class));
+
+		String firstId;
+		try {
+			firstId = submit(user).jobId();
+			assertEquals(firstId, submit(user).jobId());
+			assertNotEquals(firstId, submit(otherUser).jobId());
+		} finally {
+			release.countDown();
+		}
+
+		// once finished, a new request renders a new document
+		awaitFinished(firstId);
+		assertNotEquals(firstId, submit(user).jobId());
+	}
+
+	@Test
+	void expiredExportIsRemoved() throws Exception {
+		PdfExportJob job = completedExport(user);
+		Path file = job.getFile();
+		Thread.sleep(10);
+
+		pdfExportService.removeExpiredExports();
+
+		assertTrue(Files.notExists(file));
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/api/books/exports/" + job.getId(), String.class).getStatusCode());
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/api/books/exports/" + job.getId() + "/file", String.class).getStatusCode());
+	}
+
+	private PdfExportJobDTO submit(User exportUser) {
+		ResponseEntity<PdfExportJobDTO> response = restTemplate.postForEntity(
+				"/api/books/exports?userId=" + exportUser.getId(), null, PdfExportJobDTO.class);
+		assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+		return response.getBody();
+	}
+
+	private PdfExportJob completedExport(User exportUser) throws InterruptedException {
+		PdfExportJob job = awaitFinished(submit(exportUser).jobId());
+		assertEquals(PdfExportJob.Status.COMPLETED, job.getStatus());
+		return job;
+	}
+
+	private PdfExportJob awaitFinished(String jobId) throws InterruptedException {
+		PdfExportJob job = pdfExportService.getJob(jobId);
+		for (int i = 0; i < 100 && !job.isFinished(); i++) {
+			Thread.sleep(100);
+		}
+		return job;
+	}
+
+	private ResponseEntity<byte[]> download(String url, String range) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RANGE, range);
+		return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+	}
+}
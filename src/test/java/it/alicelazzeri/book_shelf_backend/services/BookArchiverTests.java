@@ -0,0 +1,70 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.repositories.ArchivedBookRepository;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "bookshelf.books.archive.retention-days=30")
+class BookArchiverTests {
+
+	@Autowired
+	private BookArchiver bookArchiver;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	@Autowired
+	private ArchivedBookRepository archivedBookRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void deleteUsers() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void deletedBooksAreHiddenThenArchived() {
+		User user = fixtures.createUser("Archive");
+		Book book = fixtures.createBook(user, 9780000000002L, "Archive Title");
+
+		bookService.deleteBook(book.getId());
+		assertTrue(bookRepository.findById(book.getId()).isEmpty());
+		assertEquals(0, bookRepository.countByUserId(user.getId()));
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM books WHERE id = ?", Long.class, book.getId()));
+
+		// within the retention period the row stays in the books table
+		bookArchiver.archive();
+		assertEquals(0, archivedBookRepository.countByUserId(user.getId()));
+
+		jdbcTemplate.update("UPDATE books SET deleting_date = ? WHERE id = ?", LocalDate.now().minusDays(31), book.getId());
+		assertEquals(1, bookArchiver.archive());
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM books WHERE id = ?", Long.class, book.getId()));
+		assertEquals(9780000000002L, archivedBookRepository.findById(book.getId()).orElseThrow().getIsbnCode());
+
+		userService.deleteUser(user.getId());
+		assertEquals(0, archivedBookRepository.countByUserId(user.getId()));
+	}
+}
@@ -0,0 +1,81 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.enums.DuplicateBookMode;
+import it.alicelazzeri.book_shelf_backend.exceptions.ConflictException;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.validation.IsbnValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class BookIsbnTests {
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	@AfterEach
+	void deleteUsers() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void isbnChecksums() {
+		assertTrue(IsbnValidator.isValidIsbn(9780345339683L));
+		assertTrue(IsbnValidator.isValidIsbn(9791032305690L));
+		assertTrue(IsbnValidator.isValidIsbn(345339681L));
+		assertFalse(IsbnValidator.isValidIsbn(9780345339684L));
+		assertFalse(IsbnValidator.isValidIsbn(345339682L));
+		assertFalse(IsbnValidator.isValidIsbn(12345678901L));
+		assertEquals(9780345339683L, IsbnValidator.toIsbn13(345339681L));
+		assertEquals(9780345339683L, IsbnValidator.toIsbn13(9780345339683L));
+	}
+
+	@Test
+	void duplicatesAreRejectedIncrementedOrMerged() {
+		long userId = fixtures.createUser("Isbn").getId();
+		LocalDate addingDate = LocalDate.of(2024, 5, 1);
+
+		BookService.SaveResult created = bookService.saveBook(
+				new BookDTO("The Hobbit", "J. R. R. Tolkien", 9780345339683L, addingDate, null, "Plot", 1, null), userId, DuplicateBookMode.REJECT);
+		assertTrue(created.created());
+		long bookId = created.book().getId();
+
+		// the ISBN-10 form of the same edition is a duplicate
+		BookDTO isbn10Copy = new BookDTO("The Hobbit", "J. R. R. Tolkien", 345339681L, addingDate, null, "Plot", 2, null);
+		assertThrows(ConflictException.class, () -> bookService.saveBook(isbn10Copy, userId, DuplicateBookMode.REJECT));
+
+		BookService.SaveResult incremented = bookService.saveBook(isbn10Copy, userId, DuplicateBookMode.INCREMENT);
+		assertFalse(incremented.created());
+		assertEquals(bookId, incremented.book().getId());
+		assertEquals(3, incremented.book().getCompletedReadings());
+
+		BookService.SaveResult merged = bookService.saveBook(
+				new BookDTO("The Hobbit, or There and Back Again", "J. R. R. Tolkien", 9780345339683L, null, null, "New plot", 5, null), userId, DuplicateBookMode.MERGE);
+		assertEquals(bookId, merged.book().getId());
+		assertEquals("The Hobbit, or There and Back Again", merged.book().getBookTitle());
+		assertEquals(addingDate, merged.book().getAddingDate());
+
+		Book found = bookService.getBooksByIsbn(345339681L, userId).get(0);
+		assertEquals(bookId, found.getId());
+		assertEquals(5, found.getCompletedReadings());
+
+		// once deleted, the ISBN can be added again
+		bookService.deleteBook(bookId);
+		assertTrue(bookService.getBooksByIsbn(9780345339683L, userId).isEmpty());
+		assertTrue(bookService.saveBook(isbn10Copy, userId, DuplicateBookMode.REJECT).created());
+	}
+}
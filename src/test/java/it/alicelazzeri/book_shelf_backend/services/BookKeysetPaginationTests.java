@@ -0,0 +1,126 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.exceptions.BadRequestException;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.CursorPageDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.validation.IsbnValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The books share their adding date and pairs of them their title, so every sort but id depends on the
+// id tie-break to walk the pages without skipping or repeating a book
+
+@SpringBootTest
+class BookKeysetPaginationTests {
+
+	// titles differ on letters only, so the database collation orders them as String.compareTo does
+	private static final List<String> TITLES = List.of("Keyset B", "Keyset A:1", "Keyset B", "Keyset C", "Keyset A:1");
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	private long userId;
+	private List<Book> books;
+
+	@BeforeEach
+	void createBooks() {
+		User user = fixtures.createUser("Keyset");
+		userId = user.getId();
+		books = new ArrayList<>();
+		for (int i = 0; i < TITLES.size(); i++) {
+			books.add(fixtures.createBook(user, IsbnValidator.withCheckDigit(978000000300L + i), TITLES.get(i)));
+		}
+	}
+
+	@AfterEach
+	void deleteUsers() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void titleSeekBreaksTiesOnId() {
+		Comparator<Book> byTitle = Comparator.comparing(Book::getBookTitle).thenComparing(Book::getId);
+
+		assertEquals(ids(books.stream().sorted(byTitle).toList()), scrollAll("bookTitle", "asc", 2));
+		assertEquals(ids(books.stream().sorted(byTitle.reversed()).toList()), scrollAll("bookTitle", "desc", 2));
+	}
+
+	@Test
+	void sameAddingDateIsOrderedById() {
+		List<Long> ascending = ids(books.stream().sorted(Comparator.comparing(Book::getId)).toList());
+		List<Long> descending = ids(books.stream().sorted(Comparator.comparing(Book::getId).reversed()).toList());
+
+		assertEquals(ascending, scrollAll("addingDate", "asc", 2));
+		assertEquals(ascending, scrollAll("id", "asc", 3));
+		assertEquals(descending, scrollAll("addingDate", "desc", 2));
+		assertEquals(descending, scrollAll("id", "desc", 1));
+	}
+
+	@Test
+	void cursorEncodesTheLastBookOfThePage() {
+		CursorPageDTO<Book> page = bookService.scrollBooks(userId, "bookTitle", "asc", null, 1);
+		Book last = page.content().get(0);
+
+		// the value comes last, so titles containing the separator survive the round trip
+		String cursor = new String(Base64.getUrlDecoder().decode(page.nextCursor()), StandardCharsets.UTF_8);
+		assertEquals("BOOK_TITLE:true:" + last.getId() + ":Keyset A:1", cursor);
+
+		CursorPageDTO<Book> next = bookService.scrollBooks(userId, "bookTitle", "asc", page.nextCursor(), 100);
+		assertEquals(books.size() - 1, next.size());
+		assertFalse(next.hasNext());
+		assertNull(next.nextCursor());
+	}
+
+	@Test
+	void invalidCursorsAreRejected() {
+		String titleCursor = bookService.scrollBooks(userId, "bookTitle", "asc", null, 1).nextCursor();
+
+		// a cursor only continues the sort it was issued for
+		assertThrows(BadRequestException.class, () -> bookService.scrollBooks(userId, "bookTitle", "desc", titleCursor, 1));
+		assertThrows(BadRequestException.class, () -> bookService.scrollBooks(userId, "addingDate", "asc", titleCursor, 1));
+
+		assertThrows(BadRequestException.class, () -> bookService.scrollBooks(userId, "id", "asc", "not a cursor!", 1));
+		assertThrows(BadRequestException.class, () -> bookService.scrollBooks(userId, "id", "asc", encode("ID:true:12"), 1));
+		assertThrows(BadRequestException.class, () -> bookService.scrollBooks(userId, "id", "asc", encode("ID:true:x:12"), 1));
+		assertThrows(BadRequestException.class, () -> bookService.scrollBooks(userId, "addingDate", "asc", encode("ADDING_DATE:true:12:yesterday"), 1));
+	}
+
+	// walks every page of the user's books following the cursors
+	private List<Long> scrollAll(String sort, String direction, int size) {
+		List<Long> ids = new ArrayList<>();
+		String after = null;
+		do {
+			CursorPageDTO<Book> page = bookService.scrollBooks(userId, sort, direction, after, size);
+			ids.addAll(ids(page.content()));
+			after = page.nextCursor();
+		} while (after != null);
+		return ids;
+	}
+
+	private static List<Long> ids(List<Book> books) {
+		return books.stream().map(Book::getId).toList();
+	}
+
+	private static String encode(String cursor) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,89 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.BookStats;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.stats.BookStatsDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+		"bookshelf.readings.buffered=false",
+		// the tests fold and reconcile by themselves, a scheduled run mid-test would change the global rows
+		"bookshelf.stats.global.fold-interval-ms=3600000",
+		"bookshelf.stats.reconcile.interval-ms=3600000"
+})
+class BookStatsServiceTests {
+
+	@Autowired
+	private BookStatsService bookStatsService;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void deleteUsers() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void rollupsFollowWritesAndReconcileDrift() {
+		User user = fixtures.createUser("Stats");
+		LocalDate addingDate = LocalDate.of(2024, 3, 15);
+		bookStatsService.foldGlobal();
+		long libraryBooks = bookStatsService.getStats(BookStats.GLOBAL_USER_ID, 10, 12).books();
+
+		Book first = bookService.saveBook(new BookDTO("First", "Stats Author", 9780000000019L, addingDate, null, "Plot", 0, null), user.getId());
+		Book second = bookService.saveBook(new BookDTO("Second", "Stats Author", 9780000000026L, addingDate, null, "Plot", 0, null), user.getId());
+		bookService.incrementCompletedReadings(first.getId());
+		bookService.incrementCompletedReadings(first.getId());
+
+		BookStatsDTO stats = bookStatsService.getStats(user.getId(), 10, 12);
+		assertEquals(2, stats.books());
+		assertEquals(2, stats.readings());
+		assertEquals("Stats Author", stats.topAuthors().get(0).author());
+		assertEquals(2, stats.topAuthors().get(0).books());
+		assertEquals("2024-03", stats.additionsPerMonth().get(0).month());
+
+		// the writes leave the global rows alone, the fold brings them up to date
+		assertEquals(libraryBooks, bookStatsService.getStats(BookStats.GLOBAL_USER_ID, 10, 12).books());
+		assertTrue(bookStatsService.foldGlobal() > 0);
+		assertEquals(libraryBooks + 2, bookStatsService.getStats(BookStats.GLOBAL_USER_ID, 10, 12).books());
+
+		bookService.updateBook(first.getId(), new BookDTO("First", "Other Author", 9780000000019L, addingDate, null, "Plot", 2, null));
+		bookService.deleteBook(second.getId());
+		stats = bookStatsService.getStats(user.getId(), 10, 12);
+		assertEquals(1, stats.books());
+		assertEquals(1, stats.topAuthors().size());
+		assertEquals("Other Author", stats.topAuthors().get(0).author());
+		assertEquals(2, stats.topAuthors().get(0).readings());
+
+		// a drifted rollup is detected and rebuilt from the books
+		jdbcTemplate.update("UPDATE book_stats SET books = 42 WHERE user_id = ? AND dimension = 'TOTAL'", user.getId());
+		BookStatsService.ReconciliationResult result = bookStatsService.reconcile();
+		assertTrue(result.userRowsDrifted() > 0);
+		assertEquals(1, bookStatsService.getStats(user.getId(), 10, 12).books());
+
+		userService.deleteUser(user.getId());
+		assertEquals(0, bookStatsService.getStats(user.getId(), 10, 12).books());
+	}
+}
@@ -0,0 +1,71 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import it.alicelazzeri.book_shelf_backend.repositories.CatalogBookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+class CatalogServiceTests {
+
+	private static final long ISBN = 9780261103344L;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private CatalogBookRepository catalogBookRepository;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void deleteUsers() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void copiesOfAnIsbnShareOneCatalogEntryAndKeepTheirOwnDescription() {
+		User first = fixtures.createUser("FirstCatalog");
+		User second = fixtures.createUser("SecondCatalog");
+
+		Book firstCopy = bookService.saveBook(new BookDTO("The Lord of the Rings", "J. R. R. Tolkien", ISBN,
+				LocalDate.now(), null, "Plot", 0, "/covers/catalog.png"), first.getId());
+		// the second description of the same edition doesn't replace the first one, it stays on the second copy
+		Book secondCopy = bookService.saveBook(new BookDTO("LOTR", "Tolkien", ISBN,
+				LocalDate.now(), null, "Other plot", 0, "/covers/mine.png"), second.getId());
+
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM catalog_books WHERE isbn_code = ?", Long.class, ISBN));
+		assertEquals("The Lord of the Rings", catalogBookRepository.findById(ISBN).orElseThrow().getBookTitle());
+		assertEquals("LOTR", secondCopy.getBookTitle());
+		assertEquals("Tolkien", secondCopy.getBookAuthor());
+		assertEquals("Other plot", secondCopy.getBookPlot());
+		// the first description and cover became the catalog ones, only the differences are kept on a copy
+		assertNull(jdbcTemplate.queryForObject("SELECT book_author FROM books WHERE id = ?", String.class, firstCopy.getId()));
+		assertNull(jdbcTemplate.queryForObject("SELECT book_cover_url FROM books WHERE id = ?", String.class, firstCopy.getId()));
+		assertEquals("/covers/mine.png", secondCopy.getBookCoverUrl());
+
+		// an edit of a copy is the user's own: the catalog entry and the other copy are left as they are
+		long secondVersion = jdbcTemplate.queryForObject("SELECT version FROM books WHERE id = ?", Long.class, secondCopy.getId());
+		Book edited = bookService.updateBook(firstCopy.getId(), new BookDTO("The Lord of the Rings (50th anniversary)", "J. R. R. Tolkien",
+				ISBN, LocalDate.now(), null, "Plot", 0, "/covers/catalog.png"));
+		assertEquals("The Lord of the Rings (50th anniversary)", edited.getBookTitle());
+		assertEquals("The Lord of the Rings", catalogBookRepository.findById(ISBN).orElseThrow().getBookTitle());
+		assertEquals(secondVersion, jdbcTemplate.queryForObject("SELECT version FROM books WHERE id = ?", Long.class, secondCopy.getId()));
+		assertEquals("LOTR", jdbcTemplate.queryForObject("SELECT book_title FROM books WHERE id = ?", String.class, secondCopy.getId()));
+	}
+}
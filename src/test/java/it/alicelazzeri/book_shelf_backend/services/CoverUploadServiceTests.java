@@ -0,0 +1,88 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.Book;
+import it.alicelazzeri.book_shelf_backend.repositories.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+		"bookshelf.covers.storage=local",
+		"bookshelf.covers.local.dir=target/test-covers",
+		"bookshelf.covers.widths=600,120"
+})
+class CoverUploadServiceTests {
+
+	@Autowired
+	private CoverUploadService coverUploadService;
+
+	@Value("${bookshelf.covers.staging-dir:${java.io.tmpdir}/bookshelf-covers-staging}")
+	private String stagingDirPath;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	@AfterEach
+	void deleteUsers() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void coverIsResizedStoredAndApplied() throws Exception {
+		Book book = fixtures.createBook(fixtures.createUser("Cover"), 9780000000057L, "Cover Title");
+
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(1200, 1800, BufferedImage.TYPE_INT_ARGB), "png", png);
+		MockMultipartFile file = new MockMultipartFile("bookCoverFile", "cover.png", "image/png", png.toByteArray());
+
+		CoverUploadJob job = coverUploadService.submitUpload(book.getId(), file);
+		for (int i = 0; i < 100 && !job.isFinished(); i++) {
+			Thread.sleep(100);
+		}
+
+		assertEquals(CoverUploadJob.Status.COMPLETED, job.getStatus());
+		assertEquals(job.getThumbnailUrls().get(600), bookRepository.findById(book.getId()).orElseThrow().getBookCoverUrl());
+		Path small = Path.of("target/test-covers").resolve(job.getThumbnailUrls().get(120).substring("/covers/".length()));
+		BufferedImage thumbnail = ImageIO.read(small.toFile());
+		assertEquals(120, thumbnail.getWidth());
+		assertEquals(180, thumbnail.getHeight());
+		assertTrue(Files.notExists(job.getStagedFile()));
+	}
+
+	@Test
+	void stagedUploadsLeftBehindAreResumed() throws Exception {
+		Book book = fixtures.createBook(fixtures.createUser("Staged"), 9780000000064L, "Staged Title");
+		Path stagingDir = Path.of(stagingDirPath);
+		Path staged = stagingDir.resolve("cover-" + book.getId() + "-left.upload");
+		ImageIO.write(new BufferedImage(600, 900, BufferedImage.TYPE_INT_RGB), "png", staged.toFile());
+		Path leftoverRendition = Files.createTempFile(stagingDir, "cover-600-", ".jpg");
+
+		coverUploadService.resumeStagedUploads();
+		assertTrue(Files.notExists(leftoverRendition));
+		String coverPrefix = "/covers/books/" + book.getId() + "/cover-600-";
+		String coverUrl = null;
+		for (int i = 0; i < 100 && (coverUrl == null || !coverUrl.startsWith(coverPrefix)); i++) {
+			Thread.sleep(100);
+			coverUrl = bookRepository.findById(book.getId()).orElseThrow().getBookCoverUrl();
+		}
+
+		assertTrue(coverUrl.startsWith(coverPrefix));
+		assertTrue(Files.notExists(staged));
+	}
+}
@@ -0,0 +1,81 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import it.alicelazzeri.book_shelf_backend.entities.EmailOutboxMessage;
+import it.alicelazzeri.book_shelf_backend.entities.enums.EmailStatus;
+import it.alicelazzeri.book_shelf_backend.repositories.EmailOutboxRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The dispatcher runs against an in-process SMTP server; scheduled polling is pushed out of the way
+// and dispatch() is invoked directly
+
+@SpringBootTest(properties = {
+		"gmail.smtp.host=localhost",
+		"gmail.smtp.port=3025",
+		"gmail.mail.smtp.auth=false",
+		"gmail.mail.smtp.starttls.enable=false",
+		"gmail.smtp.ssl.enable=false",
+		"bookshelf.mail.outbox.poll-interval-ms=3600000",
+		"bookshelf.mail.outbox.batch-size=10"
+})
+class EmailDispatcherTests {
+
+	@RegisterExtension
+	static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+			.withConfiguration(GreenMailConfiguration.aConfig().withDisabledAuthentication());
+
+	@Autowired
+	private EmailDispatcher emailDispatcher;
+
+	@Autowired
+	private EmailOutboxService emailOutboxService;
+
+	@Autowired
+	private EmailOutboxRepository emailOutboxRepository;
+
+	@BeforeEach
+	void clearOutbox() {
+		emailOutboxRepository.deleteAll();
+	}
+
+	@Test
+	void pendingEmailsAreDeliveredInBatches() throws Exception {
+		for (int i = 0; i < 25; i++) {
+			emailOutboxService.enqueue("reader" + i + "@bookshelf.test", "Subject " + i, "<p>Body " + i + "</p>");
+		}
+
+		assertEquals(25, emailDispatcher.dispatch());
+
+		MimeMessage[] received = greenMail.getReceivedMessages();
+		assertEquals(25, received.length);
+		assertEquals(25, emailOutboxRepository.countByStatus(EmailStatus.SENT));
+		assertEquals(0, emailOutboxRepository.countByStatus(EmailStatus.PENDING));
+	}
+
+	@Test
+	void failedDeliveryIsRescheduledWithBackoff() {
+		EmailOutboxMessage message = emailOutboxService.enqueue("reader@bookshelf.test", "Subject", "<p>Body</p>");
+		greenMail.stop();
+
+		assertEquals(0, emailDispatcher.dispatch());
+
+		EmailOutboxMessage retried = emailOutboxRepository.findById(message.getId()).orElseThrow();
+		assertEquals(EmailStatus.PENDING, retried.getStatus());
+		assertEquals(1, retried.getAttempts());
+		assertNotNull(retried.getLastError());
+		assertTrue(retried.getNextAttemptAt().isAfter(LocalDateTime.now()));
+	}
+}
@@ -0,0 +1,98 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookDTO;
+import it.alicelazzeri.book_shelf_backend.payloads.entities.BookSummaryDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+		"bookshelf.search.mode=memory",
+		"bookshelf.readings.buffered=false"
+})
+class InMemoryBookSearchIndexTests {
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private BookSearchIndex bookSearchIndex;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	@AfterEach
+	void deleteUsers() {
+		fixtures.deleteCreatedUsers();
+	}
+
+	@Test
+	void committedWritesAreIndexed() {
+		assertInstanceOf(InMemoryBookSearchIndex.class, bookSearchIndex);
+		long userId = fixtures.createUser("Indexed").getId();
+
+		long bookId = bookService.saveBook(new BookDTO("Zanzibar Lighthouse", "Indexed Author", 9780000000071L,
+				null, null, "Plot", 0, null), userId).getId();
+		assertEquals(List.of(bookId), ids(bookService.searchBooks("zanzib", userId, 10)));
+
+		bookService.updateBook(bookId, new BookDTO("Quixotic Harbour", "Indexed Author", 9780000000071L,
+				null, null, "Plot", 0, null));
+		assertTrue(bookService.searchBooks("zanzibar", userId, 10).isEmpty());
+		assertEquals(List.of(bookId), ids(bookService.searchBooks("quixotic harb", userId, 10)));
+
+		// counters and covers are written by native updates, the summaries follow them
+		bookService.incrementCompletedReadings(bookId);
+		bookService.updateBookCoverUrl(bookId, "/covers/books/" + bookId + "/cover.jpg");
+		BookSummaryDTO summary = bookService.searchBooks("quixotic", userId, 10).get(0);
+		assertEquals(1, summary.completedReadings());
+		assertEquals("/covers/books/" + bookId + "/cover.jpg", summary.bookCoverUrl());
+
+		bookService.deleteBook(bookId);
+		assertTrue(bookService.searchBooks("quixotic", userId, 10).isEmpty());
+	}
+
+	@Test
+	void rolledBackWritesAreNotIndexed() {
+		long userId = fixtures.createUser("Rollback").getId();
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			bookService.saveBook(new BookDTO("Meridian Rollback", "Rollback Author", 9780000000088L,
+					null, null, "Plot", 0, null), userId);
+			status.setRollbackOnly();
+		});
+
+		assertTrue(bookService.searchBooks("meridian", userId, 10).isEmpty());
+	}
+
+	@Test
+	void purgedBooksAreRemoved() {
+		long userId = fixtures.createUser("Purged").getId();
+		bookService.saveBook(new BookDTO("Obsidian Purge", "Purged Author", 9780000000071L,
+				null, null, "Plot", 0, null), userId);
+		assertEquals(1, bookService.searchBooks("obsidian", userId, 10).size());
+
+		userService.deleteUser(userId);
+
+		assertTrue(bookService.searchBooks("obsidian", null, 10).isEmpty());
+	}
+
+	private static List<Long> ids(List<BookSummaryDTO> summaries) {
+		return summaries.stream().map(BookSummaryDTO::id).toList();
+	}
+}
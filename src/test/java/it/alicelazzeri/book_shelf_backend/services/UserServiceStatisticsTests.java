@@ -0,0 +1,64 @@
+package it.alicelazzeri.book_shelf_backend.services;
+
+import it.alicelazzeri.book_shelf_backend.BookShelfFixtures;
+import it.alicelazzeri.book_shelf_backend.entities.User;
+import it.alicelazzeri.book_shelf_backend.payloads.validation.IsbnValidator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// rolled back, the users created by the fixtures go away with the test transaction
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class UserServiceStatisticsTests {
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private BookShelfFixtures fixtures;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Test
+	void usersListingIssuesConstantNumberOfStatements() {
+		createUsersWithBooks(5, 0);
+		long fewUsersStatements = countListingStatements();
+
+		createUsersWithBooks(50, 5);
+		long manyUsersStatements = countListingStatements();
+
+		assertEquals(fewUsersStatements, manyUsersStatements);
+	}
+
+	private long countListingStatements() {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		userService.getUsers(PageRequest.of(0, 1000), true);
+		return statistics.getPrepareStatementCount();
+	}
+
+	private void createUsersWithBooks(int users, int offset) {
+		for (int i = offset; i < offset + users; i++) {
+			User user = fixtures.createUser("Statistics" + i);
+			for (int j = 0; j < 3; j++) {
+				fixtures.createBook(user, IsbnValidator.withCheckDigit(978000000100L + j), "Title " + j);
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+	}
+}